@@ -66,10 +66,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
         List<Environment.Type> typesList = new ArrayList<>();
         Environment.Type returnType = Environment.Type.NIL;
 
-        for (int i = 0; i < ast.getParameters().size(); i++) {
+        for (int i = 0; i < ast.getParameters().size(); i++)
             typesList.add(Environment.getType(ast.getParameterTypeNames().get(i)));
-            scope.defineVariable(ast.getParameters().get(i), ast.getParameters().get(i), typesList.get(i), true, Environment.NIL);
-        }
         if (ast.getReturnTypeName().isPresent())
             returnType = Environment.getType(ast.getReturnTypeName().get());
 
@@ -77,6 +75,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
         function = ast;
 
         scope = new Scope(scope);
+        for (int i = 0; i < ast.getParameters().size(); i++)
+            scope.defineVariable(ast.getParameters().get(i), ast.getParameters().get(i), typesList.get(i), true, Environment.NIL);
 
         for (Ast.Statement stmt : ast.getStatements()) {
             visit(stmt);
@@ -284,6 +284,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent())
+            visit(ast.getOffset().get());
         if (ast.getOffset().isPresent() && ast.getOffset().get().getType() != Environment.Type.INTEGER)
             throw new RuntimeException("runtime exception, offset of access not an integer");
         ast.setVariable(scope.lookupVariable(ast.getName()));
@@ -600,6 +600,7 @@ public abstract class Ast {
             private final Ast.Expression left;
             private final Ast.Expression right;
             private Environment.Type type = null;
+            private RangeAnalyzer.Range range = null;
 
             public Binary(String operator, Ast.Expression left, Ast.Expression right) {
                 this.operator = operator;
@@ -631,6 +632,26 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            /**
+             * Whether this is a + the {@link Analyzer} typed as a String, which
+             * concatenates its operands. False if it has not been analyzed.
+             */
+            public boolean isConcatenation() {
+                return type == Environment.Type.STRING && operator.equals("+");
+            }
+
+            /**
+             * Returns the range of values computed by the {@link RangeAnalyzer},
+             * or null if the range is unknown or has not been analyzed.
+             */
+            public RangeAnalyzer.Range getRange() {
+                return range;
+            }
+
+            public void setRange(RangeAnalyzer.Range range) {
+                this.range = range;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -658,6 +679,7 @@ public abstract class Ast {
             private final Optional<Ast.Expression> offset;
             private final String name;
             private Environment.Variable variable = null;
+            private boolean inBounds = false;
 
             public Access(Optional<Ast.Expression> offset, String name) {
                 this.offset = offset;
@@ -688,6 +710,18 @@ public abstract class Ast {
                 return getVariable().getType();
             }
 
+            /**
+             * Whether the {@link BoundsAnalyzer} proved the offset is always a
+             * valid index of the list, so it need not be checked at runtime.
+             */
+            public boolean isInBounds() {
+                return inBounds;
+            }
+
+            public void setInBounds(boolean inBounds) {
+                this.inBounds = inBounds;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
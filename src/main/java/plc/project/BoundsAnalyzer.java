@@ -0,0 +1,296 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proves list accesses of an analyzed AST are in bounds and marks them with
+ * {@link Ast.Expression.Access#setInBounds(boolean)}, letting the backends
+ * skip the runtime check.
+ *
+ * List lengths are known for {@code LIST} globals initialized with a list
+ * literal that are never reassigned as a whole. Offsets are bounded from
+ * literals, immutable globals with a literal value, and loop counters: a
+ * local declared with an Integer literal that is only ever incremented
+ * ({@code i = i + k} for a literal {@code k >= 0}) is bounded below by its
+ * initial value, and inside {@code WHILE i < n} it is bounded above by
+ * {@code n - 1} until the first statement that increments it.
+ */
+public final class BoundsAnalyzer implements Ast.Visitor<RangeAnalyzer.Range> {
+
+    private final Map<Environment.Variable, Integer> lengths = new IdentityHashMap<>();
+    private final Map<Environment.Variable, BigInteger> constants = new IdentityHashMap<>();
+    private final Set<Environment.Variable> reassigned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Environment.Variable, BigInteger> counters = new IdentityHashMap<>();
+    private final Map<Environment.Variable, RangeAnalyzer.Range> ranges = new IdentityHashMap<>();
+    private int proven = 0;
+
+    /**
+     * Returns the number of accesses proven to be in bounds.
+     */
+    public int getProven() {
+        return proven;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Source ast) {
+        List<Ast.Statement.Assignment> assignments = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions())
+            assignments(function.getStatements(), assignments);
+        for (Ast.Statement.Assignment assignment : assignments) {
+            Ast.Expression.Access receiver = (Ast.Expression.Access) assignment.getReceiver();
+            if (!receiver.getOffset().isPresent())
+                reassigned.add(receiver.getVariable());
+        }
+
+        ast.getGlobals().forEach(this::visit);
+        for (Ast.Function function : ast.getFunctions())
+            counters(function, assignments);
+        ast.getFunctions().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Global ast) {
+        if (!ast.getValue().isPresent())
+            return null;
+        Ast.Expression value = ast.getValue().get();
+        visit(value);
+        if (value instanceof Ast.Expression.PlcList && !reassigned.contains(ast.getVariable()))
+            lengths.put(ast.getVariable(), ((Ast.Expression.PlcList) value).getValues().size());
+        else if (!ast.getMutable() && value instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) value).getLiteral() instanceof BigInteger)
+            constants.put(ast.getVariable(), (BigInteger) ((Ast.Expression.Literal) value).getLiteral());
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Function ast) {
+        ranges.clear();
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.While ast) {
+        Environment.Variable counter = null;
+        BigInteger bound = null;
+        if (!(ast.getCondition() instanceof Ast.Expression.Binary)) {
+            visit(ast.getCondition());
+        } else {
+            Ast.Expression.Binary condition = (Ast.Expression.Binary) ast.getCondition();
+            visit(condition.getLeft());
+            RangeAnalyzer.Range limit = visit(condition.getRight());
+            if (condition.getOperator().equals("<") && isCounter(condition.getLeft()) && limit != null) {
+                counter = ((Ast.Expression.Access) condition.getLeft()).getVariable();
+                bound = limit.getMaximum().subtract(BigInteger.ONE);
+            }
+        }
+
+        RangeAnalyzer.Range outer = counter != null ? ranges.get(counter) : null;
+        if (counter != null)
+            ranges.put(counter, new RangeAnalyzer.Range(counters.get(counter), bound));
+        for (Ast.Statement stmt : ast.getStatements()) {
+            if (counter != null && assigns(stmt, counter)) {
+                // from here on the counter may have passed the bound
+                restore(counter, outer);
+                counter = null;
+            }
+            visit(stmt);
+        }
+        if (counter != null)
+            restore(counter, outer);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.Literal ast) {
+        if (ast.getLiteral() instanceof BigInteger)
+            return new RangeAnalyzer.Range((BigInteger) ast.getLiteral(), (BigInteger) ast.getLiteral());
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.Binary ast) {
+        RangeAnalyzer.Range left = visit(ast.getLeft());
+        RangeAnalyzer.Range right = visit(ast.getRight());
+        if (left == null || right == null)
+            return null;
+        if (ast.getOperator().equals("+"))
+            return new RangeAnalyzer.Range(left.getMinimum().add(right.getMinimum()), left.getMaximum().add(right.getMaximum()));
+        if (ast.getOperator().equals("-"))
+            return new RangeAnalyzer.Range(left.getMinimum().subtract(right.getMaximum()), left.getMaximum().subtract(right.getMinimum()));
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            RangeAnalyzer.Range offset = visit(ast.getOffset().get());
+            Integer length = lengths.get(ast.getVariable());
+            if (offset != null && length != null && offset.within(new RangeAnalyzer.Range(BigInteger.ZERO, BigInteger.valueOf(length - 1)))) {
+                ast.setInBounds(true);
+                proven++;
+            }
+            return null;
+        }
+        if (constants.containsKey(ast.getVariable()))
+            return new RangeAnalyzer.Range(constants.get(ast.getVariable()), constants.get(ast.getVariable()));
+        return ranges.get(ast.getVariable());
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public RangeAnalyzer.Range visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    /**
+     * Finds the locals of a function that never decrease: declared with an
+     * Integer literal and only assigned by adding a non-negative literal.
+     */
+    private void counters(Ast.Function function, List<Ast.Statement.Assignment> assignments) {
+        List<Ast.Statement.Declaration> declarations = new ArrayList<>();
+        declarations(function.getStatements(), declarations);
+        for (Ast.Statement.Declaration declaration : declarations) {
+            if (declaration.getValue().isPresent() && declaration.getValue().get() instanceof Ast.Expression.Literal
+                    && ((Ast.Expression.Literal) declaration.getValue().get()).getLiteral() instanceof BigInteger)
+                counters.put(declaration.getVariable(), (BigInteger) ((Ast.Expression.Literal) declaration.getValue().get()).getLiteral());
+        }
+        for (Ast.Statement.Assignment assignment : assignments) {
+            Environment.Variable variable = ((Ast.Expression.Access) assignment.getReceiver()).getVariable();
+            if (counters.containsKey(variable) && !isIncrement(assignment, variable))
+                counters.remove(variable);
+        }
+    }
+
+    private boolean isCounter(Ast.Expression ast) {
+        return ast instanceof Ast.Expression.Access
+                && !((Ast.Expression.Access) ast).getOffset().isPresent()
+                && counters.containsKey(((Ast.Expression.Access) ast).getVariable());
+    }
+
+    private void restore(Environment.Variable counter, RangeAnalyzer.Range outer) {
+        if (outer != null)
+            ranges.put(counter, outer);
+        else
+            ranges.remove(counter);
+    }
+
+    private static boolean isIncrement(Ast.Statement.Assignment ast, Environment.Variable variable) {
+        if (!(ast.getValue() instanceof Ast.Expression.Binary))
+            return false;
+        Ast.Expression.Binary value = (Ast.Expression.Binary) ast.getValue();
+        return value.getOperator().equals("+")
+                && value.getLeft() instanceof Ast.Expression.Access
+                && !((Ast.Expression.Access) value.getLeft()).getOffset().isPresent()
+                && ((Ast.Expression.Access) value.getLeft()).getVariable() == variable
+                && value.getRight() instanceof Ast.Expression.Literal
+                && ((Ast.Expression.Literal) value.getRight()).getLiteral() instanceof BigInteger
+                && ((BigInteger) ((Ast.Expression.Literal) value.getRight()).getLiteral()).signum() >= 0;
+    }
+
+    private static boolean assigns(Ast.Statement ast, Environment.Variable variable) {
+        List<Ast.Statement.Assignment> assignments = new ArrayList<>();
+        assignments(Collections.singletonList(ast), assignments);
+        for (Ast.Statement.Assignment assignment : assignments) {
+            if (((Ast.Expression.Access) assignment.getReceiver()).getVariable() == variable)
+                return true;
+        }
+        return false;
+    }
+
+    private static void assignments(List<? extends Ast.Statement> statements, List<Ast.Statement.Assignment> assignments) {
+        for (Ast.Statement stmt : statements) {
+            if (stmt instanceof Ast.Statement.Assignment)
+                assignments.add((Ast.Statement.Assignment) stmt);
+            assignments(nested(stmt), assignments);
+        }
+    }
+
+    private static void declarations(List<? extends Ast.Statement> statements, List<Ast.Statement.Declaration> declarations) {
+        for (Ast.Statement stmt : statements) {
+            if (stmt instanceof Ast.Statement.Declaration)
+                declarations.add((Ast.Statement.Declaration) stmt);
+            declarations(nested(stmt), declarations);
+        }
+    }
+
+    private static List<Ast.Statement> nested(Ast.Statement ast) {
+        List<Ast.Statement> nested = new ArrayList<>();
+        if (ast instanceof Ast.Statement.If) {
+            nested.addAll(((Ast.Statement.If) ast).getThenStatements());
+            nested.addAll(((Ast.Statement.If) ast).getElseStatements());
+        } else if (ast instanceof Ast.Statement.Switch) {
+            nested.addAll(((Ast.Statement.Switch) ast).getCases());
+        } else if (ast instanceof Ast.Statement.Case) {
+            nested.addAll(((Ast.Statement.Case) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.While) {
+            nested.addAll(((Ast.Statement.While) ast).getStatements());
+        }
+        return nested;
+    }
+
+}
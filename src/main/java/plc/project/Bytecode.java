@@ -0,0 +1,139 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * A PLC program compiled by the {@link BytecodeCompiler} for the
+ * {@link VirtualMachine}. Each function is an {@code int[]} of opcodes and
+ * their operands, sharing the program's constant pool. Locals (parameters
+ * first) and globals are addressed by slot.
+ */
+public final class Bytecode {
+
+    // operand: constant index
+    public static final int CONST = 0;
+    public static final int NIL = 1;
+    // operand: local slot
+    public static final int LOAD = 2;
+    public static final int STORE = 3;
+    // operand: global slot
+    public static final int GLOAD = 4;
+    public static final int GSTORE = 5;
+    // list, offset -> element
+    public static final int ELEMENT = 6;
+    // list, offset, value ->
+    public static final int SET_ELEMENT = 7;
+    // operand: number of elements
+    public static final int LIST = 8;
+    public static final int POP = 9;
+
+    // operands whose types are checked at runtime
+    public static final int ADD = 10;
+    public static final int SUBTRACT = 11;
+    public static final int MULTIPLY = 12;
+    public static final int DIVIDE = 13;
+    public static final int POWER = 14;
+    public static final int LESS = 15;
+    public static final int GREATER = 16;
+    public static final int EQUAL = 17;
+    public static final int NOT_EQUAL = 18;
+    public static final int CONCATENATE = 19;
+
+    // Integer operands, as determined by the Analyzer
+    public static final int INTEGER_ADD = 20;
+    public static final int INTEGER_SUBTRACT = 21;
+    public static final int INTEGER_MULTIPLY = 22;
+    public static final int INTEGER_DIVIDE = 23;
+    public static final int INTEGER_LESS = 24;
+    public static final int INTEGER_GREATER = 25;
+
+    // operand: absolute target
+    public static final int JUMP = 30;
+    public static final int JUMP_IF_FALSE = 31;
+    public static final int JUMP_IF_TRUE = 32;
+
+    // operands: function index, argument count
+    public static final int CALL = 40;
+    // operands: constant index of the name, argument count
+    public static final int CALL_EXTERNAL = 41;
+    public static final int RETURN = 42;
+
+    private final List<Object> constants;
+    private final List<Function> functions;
+    private final List<String> globals;
+    private final Function initializer;
+
+    public Bytecode(List<Object> constants, List<Function> functions, List<String> globals, Function initializer) {
+        this.constants = constants;
+        this.functions = functions;
+        this.globals = globals;
+        this.initializer = initializer;
+    }
+
+    public List<Object> getConstants() {
+        return constants;
+    }
+
+    public List<Function> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Returns the names of the globals, indexed by slot.
+     */
+    public List<String> getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Returns the code initializing the globals, which returns NIL.
+     */
+    public Function getInitializer() {
+        return initializer;
+    }
+
+    public static final class Function {
+
+        private final String name;
+        private final int arity;
+        private final int locals;
+        private final int maxStack;
+        private final int[] code;
+
+        public Function(String name, int arity, int locals, int maxStack, int[] code) {
+            this.name = name;
+            this.arity = arity;
+            this.locals = locals;
+            this.maxStack = maxStack;
+            this.code = code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        /**
+         * Returns the number of local slots, including parameters.
+         */
+        public int getLocals() {
+            return locals;
+        }
+
+        /**
+         * Returns the maximum depth of the operand stack.
+         */
+        public int getMaxStack() {
+            return maxStack;
+        }
+
+        public int[] getCode() {
+            return code;
+        }
+
+    }
+
+}
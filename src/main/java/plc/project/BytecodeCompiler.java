@@ -0,0 +1,409 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles an {@link Ast.Source} into {@link Bytecode} for the
+ * {@link VirtualMachine}. Variables are resolved to slots at compile time,
+ * following the same block scoping as the {@link Interpreter}; calls to
+ * functions not defined in the source are resolved at runtime through the
+ * machine's {@link Scope}. Integer arithmetic and comparisons use dedicated
+ * opcodes when the AST has been analyzed.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Void> {
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final Map<String, Integer> functions = new HashMap<>();
+    private final List<String> globals = new ArrayList<>();
+    private final Set<String> immutable = new HashSet<>();
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+
+    private int[] code;
+    private int length;
+    private int depth;
+    private int maxStack;
+    private int locals;
+    private Bytecode bytecode;
+
+    private BytecodeCompiler() {}
+
+    public static Bytecode compile(Ast.Source ast) {
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        compiler.visit(ast);
+        return compiler.bytecode;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (int i = 0; i < ast.getFunctions().size(); i++) {
+            Ast.Function function = ast.getFunctions().get(i);
+            functions.putIfAbsent(function.getName() + "/" + function.getParameters().size(), i);
+        }
+
+        begin();
+        ast.getGlobals().forEach(this::visit);
+        emit(Bytecode.NIL, 1);
+        emit(Bytecode.RETURN, -1);
+        Bytecode.Function initializer = end("<init>", 0);
+
+        List<Bytecode.Function> compiled = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions()) {
+            begin();
+            visit(function);
+            compiled.add(end(function.getName(), function.getParameters().size()));
+        }
+        bytecode = new Bytecode(constants, compiled, globals, initializer);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.NIL, 1);
+        }
+        if (globals.contains(ast.getName())) {
+            throw new RuntimeException("The variable " + ast.getName() + " is already defined in this scope.");
+        }
+        globals.add(ast.getName());
+        if (!ast.getMutable()) {
+            immutable.add(ast.getName());
+        }
+        emit(Bytecode.GSTORE, -1, globals.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        for (String parameter : ast.getParameters()) {
+            declare(parameter);
+        }
+        ast.getStatements().forEach(this::visit);
+        emit(Bytecode.NIL, 1);
+        emit(Bytecode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        emit(Bytecode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.NIL, 1);
+        }
+        emit(Bytecode.STORE, -1, declare(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expression.Access)) {
+            throw new RuntimeException("Variable is not an Ast.Expression.Access");
+        }
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            load(receiver.getName());
+            visit(receiver.getOffset().get());
+            visit(ast.getValue());
+            emit(Bytecode.SET_ELEMENT, -3);
+            return null;
+        }
+        visit(ast.getValue());
+        Integer slot = lookup(receiver.getName());
+        if (slot != null) {
+            emit(Bytecode.STORE, -1, slot);
+        } else if (immutable.contains(receiver.getName())) {
+            throw new RuntimeException("variable is not mutable");
+        } else {
+            emit(Bytecode.GSTORE, -1, global(receiver.getName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        int otherwise = jump(Bytecode.JUMP_IF_FALSE, -1);
+        block(ast.getThenStatements());
+        int end = jump(Bytecode.JUMP, 0);
+        patch(otherwise);
+        block(ast.getElseStatements());
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        int condition = locals++;
+        emit(Bytecode.STORE, -1, condition);
+
+        List<Integer> ends = new ArrayList<>();
+        for (Ast.Statement.Case stmt : ast.getCases()) {
+            if (stmt.getValue().isPresent()) {
+                emit(Bytecode.LOAD, 1, condition);
+                visit(stmt.getValue().get());
+                emit(Bytecode.EQUAL, -1);
+                int next = jump(Bytecode.JUMP_IF_FALSE, -1);
+                visit(stmt);
+                ends.add(jump(Bytecode.JUMP, 0));
+                patch(next);
+            } else {
+                visit(stmt);
+            }
+        }
+        ends.forEach(this::patch);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        block(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        int start = length;
+        visit(ast.getCondition());
+        int end = jump(Bytecode.JUMP_IF_FALSE, -1);
+        block(ast.getStatements());
+        emit(Bytecode.JUMP, 0, start);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        emit(Bytecode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        if (ast.getLiteral() == null) {
+            emit(Bytecode.NIL, 1);
+        } else {
+            emit(Bytecode.CONST, 1, constant(ast.getLiteral()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        if (ast.getOperator().equals("&&") || ast.getOperator().equals("||")) {
+            // both operands are checked to be booleans by the conditional jumps
+            int test = ast.getOperator().equals("&&") ? Bytecode.JUMP_IF_FALSE : Bytecode.JUMP_IF_TRUE;
+            visit(ast.getLeft());
+            int first = jump(test, -1);
+            visit(ast.getRight());
+            int second = jump(test, -1);
+            emit(Bytecode.CONST, 1, constant(ast.getOperator().equals("&&")));
+            int end = jump(Bytecode.JUMP, 0);
+            depth--;
+            patch(first);
+            patch(second);
+            emit(Bytecode.CONST, 1, constant(!ast.getOperator().equals("&&")));
+            patch(end);
+            return null;
+        }
+
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        Environment.Type left = typeOf(ast.getLeft());
+        Environment.Type right = typeOf(ast.getRight());
+        boolean integer = left == Environment.Type.INTEGER && right == Environment.Type.INTEGER;
+        switch (ast.getOperator()) {
+            case "<":
+                emit(integer ? Bytecode.INTEGER_LESS : Bytecode.LESS, -1);
+                break;
+            case ">":
+                emit(integer ? Bytecode.INTEGER_GREATER : Bytecode.GREATER, -1);
+                break;
+            case "==":
+                emit(Bytecode.EQUAL, -1);
+                break;
+            case "!=":
+                emit(Bytecode.NOT_EQUAL, -1);
+                break;
+            case "+":
+                if (left == Environment.Type.STRING || right == Environment.Type.STRING)
+                    emit(Bytecode.CONCATENATE, -1);
+                else
+                    emit(integer ? Bytecode.INTEGER_ADD : Bytecode.ADD, -1);
+                break;
+            case "-":
+                emit(integer ? Bytecode.INTEGER_SUBTRACT : Bytecode.SUBTRACT, -1);
+                break;
+            case "*":
+                emit(integer ? Bytecode.INTEGER_MULTIPLY : Bytecode.MULTIPLY, -1);
+                break;
+            case "/":
+                emit(integer ? Bytecode.INTEGER_DIVIDE : Bytecode.DIVIDE, -1);
+                break;
+            case "^":
+                emit(Bytecode.POWER, -1);
+                break;
+            default:
+                throw new RuntimeException("operator is not the right type");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        load(ast.getName());
+        if (ast.getOffset().isPresent()) {
+            visit(ast.getOffset().get());
+            emit(Bytecode.ELEMENT, -1);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        int arity = ast.getArguments().size();
+        Integer function = functions.get(ast.getName() + "/" + arity);
+        if (function != null) {
+            emit(Bytecode.CALL, 1 - arity, function, arity);
+        } else {
+            emit(Bytecode.CALL_EXTERNAL, 1 - arity, constant(ast.getName()), arity);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        emit(Bytecode.LIST, 1 - ast.getValues().size(), ast.getValues().size());
+        return null;
+    }
+
+    private void begin() {
+        code = new int[64];
+        length = 0;
+        depth = 0;
+        maxStack = 0;
+        locals = 0;
+        scopes.clear();
+        scopes.add(new HashMap<>());
+    }
+
+    private Bytecode.Function end(String name, int arity) {
+        return new Bytecode.Function(name, arity, locals, maxStack, Arrays.copyOf(code, length));
+    }
+
+    private void block(List<Ast.Statement> statements) {
+        scopes.add(new HashMap<>());
+        statements.forEach(this::visit);
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private int declare(String name) {
+        Map<String, Integer> scope = scopes.get(scopes.size() - 1);
+        if (scope.containsKey(name)) {
+            throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+        }
+        scope.put(name, locals);
+        return locals++;
+    }
+
+    private Integer lookup(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            if (scopes.get(i).containsKey(name)) {
+                return scopes.get(i).get(name);
+            }
+        }
+        return null;
+    }
+
+    private int global(String name) {
+        int slot = globals.indexOf(name);
+        if (slot < 0) {
+            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        }
+        return slot;
+    }
+
+    private void load(String name) {
+        Integer slot = lookup(name);
+        if (slot != null) {
+            emit(Bytecode.LOAD, 1, slot);
+        } else {
+            emit(Bytecode.GLOAD, 1, global(name));
+        }
+    }
+
+    private int constant(Object value) {
+        // keys include the class so that e.g. 'a' and "a" stay distinct
+        List<Object> key = Arrays.asList(value.getClass(), value);
+        Integer index = constantIndices.get(key);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndices.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Appends an instruction, adjusting the tracked stack depth by the net
+     * number of values it pushes.
+     */
+    private void emit(int opcode, int delta, int... operands) {
+        if (length + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = opcode;
+        for (int operand : operands) {
+            code[length++] = operand;
+        }
+        depth += delta;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    /**
+     * Emits a jump with an unknown target and returns the position of the
+     * target operand, to be set by {@link #patch(int)}.
+     */
+    private int jump(int opcode, int delta) {
+        emit(opcode, delta, -1);
+        return length - 1;
+    }
+
+    private void patch(int operand) {
+        code[operand] = length;
+    }
+
+    private static Environment.Type typeOf(Ast.Expression ast) {
+        try {
+            return ast.getType();
+        } catch (IllegalStateException e) {
+            // not analyzed, so the type is only known at runtime
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,1245 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Executes PLC programs by translating the AST once into a tree of executable
+ * {@link Node}s and running those, instead of walking the AST through the
+ * visitor on every execution. Each binary operator gets its own node class,
+ * specialised for the operand types when the AST has been analyzed; nodes of
+ * unanalyzed ASTs check the operand types at runtime like the
+ * {@link Interpreter}.
+ *
+ * Statement nodes return null when they complete normally and the returned
+ * value after a {@code RETURN}, so no exceptions are used for control flow.
+ * Functions run in a scope nested in the scope they were defined in. A
+ * {@code RETURN} of a call to another function of this interpreter returns
+ * the pending call instead, which the calling function makes after its body
+ * returns, so tail recursion runs in constant stack.
+ */
+public final class ClosureInterpreter implements Ast.Visitor<ClosureInterpreter.Node> {
+
+    private static final Set<String> SPECIALIZING = Set.of("+", "-", "*", "/", "^", "<", ">");
+
+    private final Scope scope;
+    private boolean typeFeedback = false;
+    private final Map<Environment.Function, Body> bodies = new IdentityHashMap<>();
+
+    public ClosureInterpreter(Scope parent) {
+        scope = new Scope(parent);
+        scope.defineFunction("print", 1, args -> {
+            System.out.println(args.get(0).getValue());
+            return Environment.NIL;
+        });
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Enables nodes for operators whose operand types are not known from
+     * analysis to specialize themselves to the types observed at runtime,
+     * instead of checking the types on every execution. Applies to ASTs
+     * compiled after this call; disabled by default.
+     */
+    public void setTypeFeedback(boolean enabled) {
+        this.typeFeedback = enabled;
+    }
+
+    /**
+     * Translates the AST into nodes without executing it.
+     */
+    public Node compile(Ast ast) {
+        return visit(ast);
+    }
+
+    /**
+     * Translates and executes the AST in this interpreter's scope, returning
+     * the value of an expression, the result of {@code main} for a source, or
+     * NIL for anything else that completes without returning.
+     */
+    public Environment.PlcObject execute(Ast ast) {
+        Environment.PlcObject result = Body.complete(compile(ast).execute(scope), bodies);
+        return result != null ? result : Environment.NIL;
+    }
+
+    @Override
+    public Node visit(Ast.Source ast) {
+        List<Node> definitions = new ArrayList<>();
+        ast.getGlobals().forEach(global -> definitions.add(visit(global)));
+        ast.getFunctions().forEach(function -> definitions.add(visit(function)));
+        return new Program(definitions);
+    }
+
+    @Override
+    public Node visit(Ast.Global ast) {
+        return new Define(ast.getName(), ast.getMutable(), ast.getValue().isPresent() ? visit(ast.getValue().get()) : null);
+    }
+
+    @Override
+    public Node visit(Ast.Function ast) {
+        return new DefineFunction(ast.getName(), ast.getParameters(), block(ast.getStatements()), bodies);
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Expression ast) {
+        return new Evaluate(visit(ast.getExpression()));
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Declaration ast) {
+        return new Define(ast.getName(), true, ast.getValue().isPresent() ? visit(ast.getValue().get()) : null);
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expression.Access)) {
+            throw new RuntimeException("Variable is not an Ast.Expression.Access");
+        }
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        if (receiver.getOffset().isPresent()) {
+            return new AssignElement(receiver.getName(), visit(receiver.getOffset().get()), visit(ast.getValue()));
+        }
+        return new Assign(receiver.getName(), visit(ast.getValue()));
+    }
+
+    @Override
+    public Node visit(Ast.Statement.If ast) {
+        return new If(visit(ast.getCondition()), block(ast.getThenStatements()), block(ast.getElseStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Switch ast) {
+        List<Node> values = new ArrayList<>();
+        List<Block> blocks = new ArrayList<>();
+        Block otherwise = new Block(new Node[0]);
+        for (Ast.Statement.Case stmt : ast.getCases()) {
+            if (stmt.getValue().isPresent()) {
+                values.add(visit(stmt.getValue().get()));
+                blocks.add(block(stmt.getStatements()));
+            } else {
+                otherwise = block(stmt.getStatements());
+            }
+        }
+        return new Switch(visit(ast.getCondition()), values.toArray(new Node[0]), blocks.toArray(new Block[0]), otherwise);
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Case ast) {
+        return block(ast.getStatements());
+    }
+
+    @Override
+    public Node visit(Ast.Statement.While ast) {
+        return new While(visit(ast.getCondition()), block(ast.getStatements()));
+    }
+
+    @Override
+    public Node visit(Ast.Statement.Return ast) {
+        if (ast.getValue() instanceof Ast.Expression.Function) {
+            return new TailCall((Call) visit(ast.getValue()), bodies);
+        }
+        return new Return(visit(ast.getValue()));
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Literal ast) {
+        return new Constant(ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral()));
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Binary ast) {
+        Node left = visit(ast.getLeft());
+        Node right = visit(ast.getRight());
+        Environment.Type leftType = typeOf(ast.getLeft());
+        Environment.Type rightType = typeOf(ast.getRight());
+        boolean integer = leftType == Environment.Type.INTEGER && rightType == Environment.Type.INTEGER;
+        boolean decimal = leftType == Environment.Type.DECIMAL && rightType == Environment.Type.DECIMAL;
+        boolean string = leftType == Environment.Type.STRING || rightType == Environment.Type.STRING;
+        if (typeFeedback && !integer && !decimal && !string && SPECIALIZING.contains(ast.getOperator())) {
+            return new Specializing(ast.getOperator(), left, right);
+        }
+
+        switch (ast.getOperator()) {
+            case "&&":
+                return new And(left, right);
+            case "||":
+                return new Or(left, right);
+            case "<":
+                return integer ? new IntegerLess(left, right) : new Less(left, right);
+            case ">":
+                return integer ? new IntegerGreater(left, right) : new Greater(left, right);
+            case "==":
+                return new Equal(left, right);
+            case "!=":
+                return new NotEqual(left, right);
+            case "+":
+                if (string)
+                    return new Concatenate(left, right);
+                return integer ? new IntegerAdd(left, right) : decimal ? new DecimalAdd(left, right) : new Add(left, right);
+            case "-":
+                return integer ? new IntegerSubtract(left, right) : decimal ? new DecimalSubtract(left, right) : new Subtract(left, right);
+            case "*":
+                return integer ? new IntegerMultiply(left, right) : decimal ? new DecimalMultiply(left, right) : new Multiply(left, right);
+            case "/":
+                return integer ? new IntegerDivide(left, right) : decimal ? new DecimalDivide(left, right) : new Divide(left, right);
+            case "^":
+                return new Power(left, right);
+            default:
+                throw new RuntimeException("operator is not the right type");
+        }
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            return new Element(ast.getName(), visit(ast.getOffset().get()));
+        }
+        return new Variable(ast.getName());
+    }
+
+    @Override
+    public Node visit(Ast.Expression.Function ast) {
+        Node[] arguments = new Node[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = visit(ast.getArguments().get(i));
+        }
+        return new Call(ast.getName(), arguments);
+    }
+
+    @Override
+    public Node visit(Ast.Expression.PlcList ast) {
+        Node[] values = new Node[ast.getValues().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = visit(ast.getValues().get(i));
+        }
+        return new ListValue(typeOf(ast), values);
+    }
+
+    private Block block(List<? extends Ast.Statement> statements) {
+        Node[] nodes = new Node[statements.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = visit(statements.get(i));
+        }
+        return new Block(nodes);
+    }
+
+    private static Environment.Type typeOf(Ast.Expression ast) {
+        try {
+            return ast.getType();
+        } catch (IllegalStateException e) {
+            // not analyzed, so the type is only known at runtime
+            return null;
+        }
+    }
+
+    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
+    }
+
+    /**
+     * An executable node. Expressions return their value; statements return
+     * null, or the returned value if a {@code RETURN} was executed.
+     */
+    public abstract static class Node {
+
+        public abstract Environment.PlcObject execute(Scope scope);
+
+    }
+
+    private abstract static class BinaryNode extends Node {
+
+        final Node left;
+        final Node right;
+
+        BinaryNode(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+    }
+
+    private static final class Program extends Node {
+
+        private final List<Node> definitions;
+
+        Program(List<Node> definitions) {
+            this.definitions = definitions;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            for (Node definition : definitions) {
+                definition.execute(scope);
+            }
+            return scope.lookupFunction("main", 0).invoke(List.of());
+        }
+
+    }
+
+    private static final class DefineFunction extends Node {
+
+        private final String name;
+        private final List<String> parameters;
+        private final Block body;
+        private final Map<Environment.Function, Body> bodies;
+
+        DefineFunction(String name, List<String> parameters, Block body, Map<Environment.Function, Body> bodies) {
+            this.name = name;
+            this.parameters = parameters;
+            this.body = body;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Body function = new Body(parameters, body, scope, bodies);
+            scope.defineFunction(name, parameters.size(), function);
+            bodies.put(scope.lookupFunction(name, parameters.size()), function);
+            return null;
+        }
+
+    }
+
+    /**
+     * A defined function. Calls pending from a tail {@code RETURN} are made
+     * here in a loop after the body returns.
+     */
+    private static final class Body implements java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> {
+
+        private final List<String> parameters;
+        private final Block statements;
+        private final Scope definition;
+        private final Map<Environment.Function, Body> bodies;
+
+        Body(List<String> parameters, Block statements, Scope definition, Map<Environment.Function, Body> bodies) {
+            this.parameters = parameters;
+            this.statements = statements;
+            this.definition = definition;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public Environment.PlcObject apply(List<Environment.PlcObject> args) {
+            Environment.PlcObject result = run(new Scope(definition), args);
+            return complete(result != null ? result : Environment.NIL, bodies);
+        }
+
+        private Environment.PlcObject run(Scope local, List<Environment.PlcObject> args) {
+            for (int i = 0; i < parameters.size(); i++) {
+                local.defineVariable(parameters.get(i), true, args.get(i));
+            }
+            return statements.run(local);
+        }
+
+        /**
+         * Makes the calls pending in a result until it is a value.
+         */
+        static Environment.PlcObject complete(Environment.PlcObject result, Map<Environment.Function, Body> bodies) {
+            Scope frame = null;
+            while (result != null && result.getValue() instanceof PendingCall) {
+                PendingCall call = (PendingCall) result.getValue();
+                Body body = bodies.get(call.function);
+                if (body == null) {
+                    return call.function.invoke(call.arguments);
+                }
+                // calls to functions defined in the same scope reuse the frame
+                if (frame != null && frame.getParent() == body.definition) {
+                    frame.reset();
+                } else {
+                    frame = new Scope(body.definition);
+                }
+                result = body.run(frame, call.arguments);
+                if (result == null) {
+                    return Environment.NIL;
+                }
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Block extends Node {
+
+        private final Node[] statements;
+        // blocks without declarations define nothing, so they need no scope
+        private final boolean declares;
+
+        Block(Node[] statements) {
+            this.statements = statements;
+            this.declares = Arrays.stream(statements).anyMatch(statement -> statement instanceof Define);
+        }
+
+        /**
+         * Runs the statements in a new scope if they declare variables.
+         */
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return run(declares ? new Scope(scope) : scope);
+        }
+
+        /**
+         * Runs the statements directly in the given scope.
+         */
+        Environment.PlcObject run(Scope scope) {
+            for (Node statement : statements) {
+                Environment.PlcObject result = statement.execute(scope);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private static final class Evaluate extends Node {
+
+        private final Node expression;
+
+        Evaluate(Node expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            expression.execute(scope);
+            return null;
+        }
+
+    }
+
+    private static final class Define extends Node {
+
+        private final String name;
+        private final boolean mutable;
+        private final Node value;
+
+        Define(String name, boolean mutable, Node value) {
+            this.name = name;
+            this.mutable = mutable;
+            this.value = value;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            scope.defineVariable(name, mutable, value != null ? value.execute(scope) : Environment.NIL);
+            return null;
+        }
+
+    }
+
+    private static final class Assign extends Node {
+
+        private final String name;
+        private final Node value;
+
+        Assign(String name, Node value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Environment.Variable variable = scope.lookupVariable(name);
+            if (!variable.getMutable()) {
+                throw new RuntimeException("variable is not mutable");
+            }
+            variable.setValue(value.execute(scope));
+            return null;
+        }
+
+    }
+
+    private static final class AssignElement extends Node {
+
+        private final String name;
+        private final Node offset;
+        private final Node value;
+
+        AssignElement(String name, Node offset, Node value) {
+            this.name = name;
+            this.offset = offset;
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Environment.PlcObject execute(Scope scope) {
+            Environment.Variable variable = scope.lookupVariable(name);
+            if (!variable.getMutable()) {
+                throw new RuntimeException("variable is not mutable");
+            }
+            Environment.PlcObject element = value.execute(scope);
+            Environment.PlcObject position = offset.execute(scope);
+            Object list = variable.getValue().getValue();
+            int index = Interpreter.index(position, ((List<?>) list).size());
+            if (list instanceof TypedList) {
+                ((TypedList) list).setElement(index, element);
+            } else {
+                ((List<Object>) list).set(index, element.getValue());
+            }
+            return null;
+        }
+
+    }
+
+    private static final class If extends Node {
+
+        private final Node condition;
+        private final Block thenBlock;
+        private final Block elseBlock;
+
+        If(Node condition, Block thenBlock, Block elseBlock) {
+            this.condition = condition;
+            this.thenBlock = thenBlock;
+            this.elseBlock = elseBlock;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            if (requireType(Boolean.class, condition.execute(scope))) {
+                return thenBlock.execute(scope);
+            }
+            return elseBlock.execute(scope);
+        }
+
+    }
+
+    private static final class Switch extends Node {
+
+        private final Node condition;
+        private final Node[] values;
+        private final Block[] blocks;
+        private final Block otherwise;
+
+        Switch(Node condition, Node[] values, Block[] blocks, Block otherwise) {
+            this.condition = condition;
+            this.values = values;
+            this.blocks = blocks;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Object value = condition.execute(scope).getValue();
+            for (int i = 0; i < values.length; i++) {
+                if (value.equals(values[i].execute(scope).getValue())) {
+                    return blocks[i].execute(scope);
+                }
+            }
+            return otherwise.execute(scope);
+        }
+
+    }
+
+    private static final class While extends Node {
+
+        private final Node condition;
+        private final Block body;
+
+        While(Node condition, Block body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            // one scope serves every iteration, reset before each
+            Scope frame = body.declares ? new Scope(scope) : scope;
+            while (requireType(Boolean.class, condition.execute(scope))) {
+                if (frame != scope) {
+                    frame.reset();
+                }
+                Environment.PlcObject result = body.run(frame);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private static final class Return extends Node {
+
+        private final Node value;
+
+        Return(Node value) {
+            this.value = value;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return value.execute(scope);
+        }
+
+    }
+
+    /**
+     * A {@code RETURN} of a function call, which evaluates the arguments and
+     * leaves the call to the function returning.
+     */
+    private static final class TailCall extends Node {
+
+        private final Call call;
+        private final Map<Environment.Function, Body> bodies;
+
+        TailCall(Call call, Map<Environment.Function, Body> bodies) {
+            this.call = call;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Environment.Function function = scope.lookupFunction(call.key);
+            List<Environment.PlcObject> args = call.evaluate(scope);
+            if (!bodies.containsKey(function)) {
+                return function.invoke(args);
+            }
+            return new Environment.PlcObject(Environment.Type.ANY, new PendingCall(function, args));
+        }
+
+    }
+
+    private static final class PendingCall {
+
+        private final Environment.Function function;
+        private final List<Environment.PlcObject> arguments;
+
+        PendingCall(Environment.Function function, List<Environment.PlcObject> arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+    }
+
+    private static final class Constant extends Node {
+
+        private final Environment.PlcObject value;
+
+        Constant(Environment.PlcObject value) {
+            this.value = value;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return value;
+        }
+
+    }
+
+    private static final class Variable extends Node {
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return scope.lookupVariable(name).getValue();
+        }
+
+    }
+
+    private static final class Element extends Node {
+
+        private final String name;
+        private final Node offset;
+
+        Element(String name, Node offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Object list = scope.lookupVariable(name).getValue().getValue();
+            int index = Interpreter.index(offset.execute(scope), ((List<?>) list).size());
+            if (list instanceof TypedList) {
+                return ((TypedList) list).getElement(index);
+            }
+            return Environment.create(((List<?>) list).get(index));
+        }
+
+    }
+
+    private static final class Call extends Node {
+
+        private final Scope.FunctionKey key;
+        private final Node[] arguments;
+
+        Call(String name, Node[] arguments) {
+            this.key = new Scope.FunctionKey(name, arguments.length);
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Environment.Function function = scope.lookupFunction(key);
+            return function.invoke(evaluate(scope));
+        }
+
+        List<Environment.PlcObject> evaluate(Scope scope) {
+            List<Environment.PlcObject> args = new ArrayList<>(arguments.length);
+            for (Node argument : arguments) {
+                args.add(argument.execute(scope));
+            }
+            return args;
+        }
+
+    }
+
+    private static final class ListValue extends Node {
+
+        private final Environment.Type type;
+        private final Node[] values;
+
+        ListValue(Environment.Type type, Node[] values) {
+            this.type = type;
+            this.values = values;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            List<Environment.PlcObject> list = new ArrayList<>(values.length);
+            for (Node value : values) {
+                list.add(value.execute(scope));
+            }
+            return Environment.create(TypedList.of(type, list));
+        }
+
+    }
+
+    private static final class And extends BinaryNode {
+
+        And(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(requireType(Boolean.class, left.execute(scope)) && requireType(Boolean.class, right.execute(scope)));
+        }
+
+    }
+
+    private static final class Or extends BinaryNode {
+
+        Or(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(requireType(Boolean.class, left.execute(scope)) || requireType(Boolean.class, right.execute(scope)));
+        }
+
+    }
+
+    private static final class Equal extends BinaryNode {
+
+        Equal(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(Objects.equals(left.execute(scope).getValue(), right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class NotEqual extends BinaryNode {
+
+        NotEqual(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(!Objects.equals(left.execute(scope).getValue(), right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class IntegerLess extends BinaryNode {
+
+        IntegerLess(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigInteger) left.execute(scope).getValue()).compareTo((BigInteger) right.execute(scope).getValue()) < 0);
+        }
+
+    }
+
+    private static final class IntegerGreater extends BinaryNode {
+
+        IntegerGreater(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigInteger) left.execute(scope).getValue()).compareTo((BigInteger) right.execute(scope).getValue()) > 0);
+        }
+
+    }
+
+    private static final class Less extends BinaryNode {
+
+        Less(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(compare(left.execute(scope).getValue(), right.execute(scope).getValue()) < 0);
+        }
+
+    }
+
+    private static final class Greater extends BinaryNode {
+
+        Greater(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(compare(left.execute(scope).getValue(), right.execute(scope).getValue()) > 0);
+        }
+
+    }
+
+    private static final class Concatenate extends BinaryNode {
+
+        Concatenate(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(left.execute(scope).getValue().toString() + right.execute(scope).getValue());
+        }
+
+    }
+
+    private static final class IntegerAdd extends BinaryNode {
+
+        IntegerAdd(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigInteger) left.execute(scope).getValue()).add((BigInteger) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class IntegerSubtract extends BinaryNode {
+
+        IntegerSubtract(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigInteger) left.execute(scope).getValue()).subtract((BigInteger) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class IntegerMultiply extends BinaryNode {
+
+        IntegerMultiply(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigInteger) left.execute(scope).getValue()).multiply((BigInteger) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class IntegerDivide extends BinaryNode {
+
+        IntegerDivide(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            BigInteger dividend = (BigInteger) left.execute(scope).getValue();
+            BigInteger divisor = (BigInteger) right.execute(scope).getValue();
+            if (divisor.signum() == 0) {
+                throw new RuntimeException("cannot divide by zero");
+            }
+            return Environment.create(dividend.divide(divisor));
+        }
+
+    }
+
+    private static final class DecimalAdd extends BinaryNode {
+
+        DecimalAdd(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigDecimal) left.execute(scope).getValue()).add((BigDecimal) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class DecimalSubtract extends BinaryNode {
+
+        DecimalSubtract(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigDecimal) left.execute(scope).getValue()).subtract((BigDecimal) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class DecimalMultiply extends BinaryNode {
+
+        DecimalMultiply(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(((BigDecimal) left.execute(scope).getValue()).multiply((BigDecimal) right.execute(scope).getValue()));
+        }
+
+    }
+
+    private static final class DecimalDivide extends BinaryNode {
+
+        DecimalDivide(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return Environment.create(divide((BigDecimal) left.execute(scope).getValue(), (BigDecimal) right.execute(scope).getValue()));
+        }
+
+    }
+
+    /**
+     * Addition of operands whose types are only known at runtime.
+     */
+    private static final class Add extends BinaryNode {
+
+        Add(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return add(left.execute(scope).getValue(), right.execute(scope).getValue());
+        }
+
+    }
+
+    private static final class Subtract extends BinaryNode {
+
+        Subtract(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return subtract(left.execute(scope).getValue(), right.execute(scope).getValue());
+        }
+
+    }
+
+    private static final class Multiply extends BinaryNode {
+
+        Multiply(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return multiply(left.execute(scope).getValue(), right.execute(scope).getValue());
+        }
+
+    }
+
+    private static final class Divide extends BinaryNode {
+
+        Divide(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return divide(left.execute(scope).getValue(), right.execute(scope).getValue());
+        }
+
+    }
+
+    private static final class Power extends BinaryNode {
+
+        Power(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            return power(left.execute(scope).getValue(), right.execute(scope).getValue());
+        }
+
+    }
+
+    /**
+     * A binary operation whose operand types are only known at runtime, which
+     * specializes itself to the types it observes. The first execution
+     * rewrites the node to the operation for those types, which only checks
+     * that later operands have the same types. When they do not, the node
+     * deoptimizes to the generic operation, which dispatches on the types on
+     * every execution, and stays generic.
+     */
+    private static final class Specializing extends BinaryNode {
+
+        private final String operator;
+        private Operation operation = null;
+        private String state = "uninitialized";
+
+        Specializing(String operator, Node left, Node right) {
+            super(left, right);
+            this.operator = operator;
+        }
+
+        @Override
+        public Environment.PlcObject execute(Scope scope) {
+            Object x = left.execute(scope).getValue();
+            Object y = right.execute(scope).getValue();
+            if (operation != null) {
+                Environment.PlcObject result = operation.apply(x, y);
+                if (result != null) {
+                    return result;
+                }
+                generalize();
+            } else {
+                specialize(x, y);
+            }
+            return operation.apply(x, y);
+        }
+
+        private void specialize(Object x, Object y) {
+            Operation specialized = null;
+            if (operator.equals("+") && (x instanceof String || y instanceof String)) {
+                state = "String";
+                specialized = (a, b) -> a instanceof String || b instanceof String ? Environment.create(a.toString() + b) : null;
+            } else if (x instanceof BigInteger && y instanceof BigInteger) {
+                state = "Integer";
+                specialized = integerOperation(operator);
+            } else if (x instanceof BigDecimal && y instanceof BigDecimal) {
+                state = "Decimal";
+                specialized = decimalOperation(operator);
+            }
+            if (specialized != null) {
+                operation = specialized;
+            } else {
+                generalize();
+            }
+        }
+
+        private void generalize() {
+            state = "generic";
+            switch (operator) {
+                case "+":
+                    operation = ClosureInterpreter::add;
+                    break;
+                case "-":
+                    operation = ClosureInterpreter::subtract;
+                    break;
+                case "*":
+                    operation = ClosureInterpreter::multiply;
+                    break;
+                case "/":
+                    operation = ClosureInterpreter::divide;
+                    break;
+                case "^":
+                    operation = ClosureInterpreter::power;
+                    break;
+                case "<":
+                    operation = (x, y) -> Environment.create(compare(x, y) < 0);
+                    break;
+                default:
+                    operation = (x, y) -> Environment.create(compare(x, y) > 0);
+                    break;
+            }
+        }
+
+        /**
+         * Returns the operator followed by the operand types it is
+         * specialized to, such as {@code +[Integer]}.
+         */
+        @Override
+        public String toString() {
+            return operator + "[" + state + "]";
+        }
+
+    }
+
+    /**
+     * An operation on operand values, which returns null if the operands are
+     * not of the types it is specialized to.
+     */
+    @FunctionalInterface
+    private interface Operation {
+
+        Environment.PlcObject apply(Object x, Object y);
+
+    }
+
+    private static Operation integerOperation(String operator) {
+        switch (operator) {
+            case "+":
+                return integers(BigInteger::add);
+            case "-":
+                return integers(BigInteger::subtract);
+            case "*":
+                return integers(BigInteger::multiply);
+            case "/":
+                return integers((x, y) -> {
+                    if (y.signum() == 0)
+                        throw new RuntimeException("cannot divide by zero");
+                    return x.divide(y);
+                });
+            case "^":
+                return (x, y) -> x instanceof BigInteger && y instanceof BigInteger ? power(x, y) : null;
+            case "<":
+                return integers((x, y) -> x.compareTo(y) < 0);
+            default:
+                return integers((x, y) -> x.compareTo(y) > 0);
+        }
+    }
+
+    private static Operation decimalOperation(String operator) {
+        switch (operator) {
+            case "+":
+                return decimals(BigDecimal::add);
+            case "-":
+                return decimals(BigDecimal::subtract);
+            case "*":
+                return decimals(BigDecimal::multiply);
+            case "/":
+                return decimals(ClosureInterpreter::divide);
+            case "<":
+                return decimals((x, y) -> x.compareTo(y) < 0);
+            case ">":
+                return decimals((x, y) -> x.compareTo(y) > 0);
+            default:
+                return null;
+        }
+    }
+
+    private static Operation integers(BiFunction<BigInteger, BigInteger, Object> function) {
+        return (x, y) -> x instanceof BigInteger && y instanceof BigInteger ? Environment.create(function.apply((BigInteger) x, (BigInteger) y)) : null;
+    }
+
+    private static Operation decimals(BiFunction<BigDecimal, BigDecimal, Object> function) {
+        return (x, y) -> x instanceof BigDecimal && y instanceof BigDecimal ? Environment.create(function.apply((BigDecimal) x, (BigDecimal) y)) : null;
+    }
+
+    private static Environment.PlcObject add(Object x, Object y) {
+        if (x instanceof String || y instanceof String)
+            return Environment.create(x.toString() + y);
+        if (x instanceof BigInteger && y instanceof BigInteger)
+            return Environment.create(((BigInteger) x).add((BigInteger) y));
+        if (x instanceof BigDecimal && y instanceof BigDecimal)
+            return Environment.create(((BigDecimal) x).add((BigDecimal) y));
+        throw new RuntimeException("types of the sides of the equation do not match");
+    }
+
+    private static Environment.PlcObject subtract(Object x, Object y) {
+        if (x instanceof BigInteger && y instanceof BigInteger)
+            return Environment.create(((BigInteger) x).subtract((BigInteger) y));
+        if (x instanceof BigDecimal && y instanceof BigDecimal)
+            return Environment.create(((BigDecimal) x).subtract((BigDecimal) y));
+        throw new RuntimeException("types of the sides of the equation do not match");
+    }
+
+    private static Environment.PlcObject multiply(Object x, Object y) {
+        if (x instanceof BigInteger && y instanceof BigInteger)
+            return Environment.create(((BigInteger) x).multiply((BigInteger) y));
+        if (x instanceof BigDecimal && y instanceof BigDecimal)
+            return Environment.create(((BigDecimal) x).multiply((BigDecimal) y));
+        throw new RuntimeException("types of the sides of the equation do not match");
+    }
+
+    private static Environment.PlcObject divide(Object x, Object y) {
+        if (x instanceof BigInteger && y instanceof BigInteger) {
+            if (((BigInteger) y).signum() == 0)
+                throw new RuntimeException("cannot divide by zero");
+            return Environment.create(((BigInteger) x).divide((BigInteger) y));
+        }
+        if (x instanceof BigDecimal && y instanceof BigDecimal)
+            return Environment.create(divide((BigDecimal) x, (BigDecimal) y));
+        throw new RuntimeException("types of the sides of the equation do not match");
+    }
+
+    private static Environment.PlcObject power(Object x, Object y) {
+        if (!(x instanceof BigInteger) || !(y instanceof BigInteger))
+            throw new RuntimeException("Expected type " + BigInteger.class.getName() + ", received " + (x instanceof BigInteger ? y : x).getClass().getName() + ".");
+        return Environment.create(IntegerMath.power((BigInteger) x, (BigInteger) y));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right) {
+        if (!(left instanceof Comparable) || !(right instanceof Comparable)) {
+            throw new RuntimeException("arguments aren't comparable");
+        }
+        try {
+            return ((Comparable<Object>) left).compareTo(right);
+        } catch (ClassCastException e) {
+            throw new RuntimeException("sides are not the same type");
+        }
+    }
+
+    private static BigDecimal divide(BigDecimal dividend, BigDecimal divisor) {
+        if (divisor.signum() == 0) {
+            throw new RuntimeException("cannot divide by zero");
+        }
+        return dividend.divide(divisor, RoundingMode.HALF_EVEN);
+    }
+
+}
@@ -0,0 +1,353 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimization pass removing code that can never run or whose result is never
+ * used. Like the {@link Optimizer}, it expects an analyzed AST and returns a
+ * rewritten copy; running the {@link Optimizer} first lets constant conditions
+ * be folded into literals this pass can resolve.
+ *
+ * Within each function body, this pass removes:
+ *  - statements following a statement that always returns,
+ *  - {@code IF}/{@code SWITCH} branches that a literal condition never takes,
+ *  - {@code WHILE FALSE} loops,
+ *  - {@code LET} declarations that are never referenced and whose initializer
+ *    has no side effects.
+ *
+ * The number of AST nodes removed is available from {@link #getRemoved()}.
+ */
+public final class DeadCodeEliminator implements Ast.Visitor<Ast> {
+
+    private final Map<Environment.Variable, Integer> references = new IdentityHashMap<>();
+    private int removed = 0;
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions())
+            functions.add(visit(function));
+        return new Ast.Source(ast.getGlobals(), functions);
+    }
+
+    @Override
+    public Ast.Global visit(Ast.Global ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Function visit(Ast.Function ast) {
+        List<Ast.Statement> statements = ast.getStatements();
+        int before;
+        // removing a declaration can leave the ones it referenced unused
+        do {
+            before = removed;
+            references.clear();
+            reference(statements);
+            statements = eliminate(statements);
+        } while (removed != before);
+
+        Ast.Function function = new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Expression ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Declaration ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Assignment ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.If ast) {
+        return new Ast.Statement.If(ast.getCondition(), eliminate(ast.getThenStatements()), eliminate(ast.getElseStatements()));
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Switch ast) {
+        List<Ast.Statement.Case> cases = new ArrayList<>();
+        for (Ast.Statement.Case stmt : ast.getCases())
+            cases.add(visit(stmt));
+        return new Ast.Statement.Switch(ast.getCondition(), cases);
+    }
+
+    @Override
+    public Ast.Statement.Case visit(Ast.Statement.Case ast) {
+        return new Ast.Statement.Case(ast.getValue(), eliminate(ast.getStatements()));
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.While ast) {
+        return new Ast.Statement.While(ast.getCondition(), eliminate(ast.getStatements()));
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Return ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Group ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Binary ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Access ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Function ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.PlcList ast) {
+        return ast;
+    }
+
+    /**
+     * Rewrites a block of statements, dropping or inlining dead code.
+     */
+    private List<Ast.Statement> eliminate(List<Ast.Statement> statements) {
+        List<Ast.Statement> result = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            Ast.Statement stmt = statements.get(i);
+            if (stmt instanceof Ast.Statement.Declaration && isUnused((Ast.Statement.Declaration) stmt)) {
+                removed += count(stmt);
+            }
+            else if (stmt instanceof Ast.Statement.If && isConstant(((Ast.Statement.If) stmt).getCondition())) {
+                Ast.Statement.If branch = (Ast.Statement.If) stmt;
+                boolean condition = (Boolean) ((Ast.Expression.Literal) branch.getCondition()).getLiteral();
+                removed += 1 + count(branch.getCondition()) + count(condition ? branch.getElseStatements() : branch.getThenStatements());
+                inline(result, eliminate(condition ? branch.getThenStatements() : branch.getElseStatements()));
+            }
+            else if (stmt instanceof Ast.Statement.While && isConstant(((Ast.Statement.While) stmt).getCondition())
+                    && !((Boolean) ((Ast.Expression.Literal) ((Ast.Statement.While) stmt).getCondition()).getLiteral())) {
+                removed += count(stmt);
+            }
+            else if (stmt instanceof Ast.Statement.Switch && isConstant(((Ast.Statement.Switch) stmt).getCondition())) {
+                Ast.Statement.Switch branch = (Ast.Statement.Switch) stmt;
+                Ast.Statement.Case selected = select(branch);
+                if (selected == null) {
+                    result.add(visit(branch));
+                }
+                else {
+                    removed += count(stmt) - count(selected.getStatements());
+                    inline(result, eliminate(selected.getStatements()));
+                }
+            }
+            else {
+                result.add((Ast.Statement) visit(stmt));
+            }
+
+            if (!result.isEmpty() && isTerminal(result.get(result.size() - 1))) {
+                removed += count(statements.subList(i + 1, statements.size()));
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Inlines the statements of a resolved branch into the enclosing block. If
+     * the branch declares variables it keeps its own scope as an
+     * {@code IF TRUE}, so declarations cannot clash with the enclosing block.
+     */
+    private void inline(List<Ast.Statement> block, List<Ast.Statement> statements) {
+        if (statements.isEmpty())
+            return;
+        for (Ast.Statement stmt : statements) {
+            if (stmt instanceof Ast.Statement.Declaration) {
+                Ast.Expression.Literal condition = new Ast.Expression.Literal(true);
+                condition.setType(Environment.Type.BOOLEAN);
+                block.add(new Ast.Statement.If(condition, statements, new ArrayList<>()));
+                // the wrapping IF and its condition are added back
+                removed -= 2;
+                return;
+            }
+        }
+        block.addAll(statements);
+    }
+
+    /**
+     * Returns the case a switch on a literal condition always runs, or null if
+     * a case value cannot be compared at compile time.
+     */
+    private static Ast.Statement.Case select(Ast.Statement.Switch ast) {
+        Object condition = ((Ast.Expression.Literal) ast.getCondition()).getLiteral();
+        for (Ast.Statement.Case stmt : ast.getCases()) {
+            if (!stmt.getValue().isPresent())
+                return stmt;
+            if (!(stmt.getValue().get() instanceof Ast.Expression.Literal))
+                return null;
+            if (condition.equals(((Ast.Expression.Literal) stmt.getValue().get()).getLiteral()))
+                return stmt;
+        }
+        return null;
+    }
+
+    private boolean isUnused(Ast.Statement.Declaration ast) {
+        return !references.containsKey(ast.getVariable()) && (!ast.getValue().isPresent() || isPure(ast.getValue().get()));
+    }
+
+    private static boolean isConstant(Ast.Expression ast) {
+        return ast instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) ast).getLiteral() != null;
+    }
+
+    /**
+     * Whether evaluating an expression can neither have side effects nor fail.
+     * Function calls, list indexing and division or exponentiation by a
+     * possibly zero value are all treated as impure.
+     */
+    private static boolean isPure(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Literal)
+            return true;
+        if (ast instanceof Ast.Expression.Access)
+            return !((Ast.Expression.Access) ast).getOffset().isPresent();
+        if (ast instanceof Ast.Expression.Group)
+            return isPure(((Ast.Expression.Group) ast).getExpression());
+        if (ast instanceof Ast.Expression.Binary) {
+            Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+            if (binary.getOperator().equals("^"))
+                return false;
+            if (binary.getOperator().equals("/") && !(binary.getRight() instanceof Ast.Expression.Literal && isNonZero(((Ast.Expression.Literal) binary.getRight()).getLiteral())))
+                return false;
+            return isPure(binary.getLeft()) && isPure(binary.getRight());
+        }
+        if (ast instanceof Ast.Expression.PlcList) {
+            for (Ast.Expression value : ((Ast.Expression.PlcList) ast).getValues()) {
+                if (!isPure(value))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isNonZero(Object literal) {
+        if (literal instanceof BigInteger)
+            return ((BigInteger) literal).signum() != 0;
+        return false;
+    }
+
+    /**
+     * Whether control never continues past the given statement.
+     */
+    private static boolean isTerminal(Ast.Statement ast) {
+        if (ast instanceof Ast.Statement.Return)
+            return true;
+        if (ast instanceof Ast.Statement.If)
+            return isTerminal(((Ast.Statement.If) ast).getThenStatements()) && isTerminal(((Ast.Statement.If) ast).getElseStatements());
+        if (ast instanceof Ast.Statement.Switch) {
+            List<Ast.Statement.Case> cases = ((Ast.Statement.Switch) ast).getCases();
+            if (cases.isEmpty() || cases.get(cases.size() - 1).getValue().isPresent())
+                return false;
+            for (Ast.Statement.Case stmt : cases) {
+                if (!isTerminal(stmt.getStatements()))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isTerminal(List<Ast.Statement> statements) {
+        for (Ast.Statement stmt : statements) {
+            if (isTerminal(stmt))
+                return true;
+        }
+        return false;
+    }
+
+    private void reference(List<? extends Ast> nodes) {
+        for (Ast node : nodes)
+            reference(node);
+    }
+
+    /**
+     * Counts the accesses of every variable in the given subtree.
+     */
+    private void reference(Ast ast) {
+        if (ast instanceof Ast.Expression.Access)
+            references.merge(((Ast.Expression.Access) ast).getVariable(), 1, Integer::sum);
+        reference(children(ast));
+    }
+
+    private static int count(List<? extends Ast> nodes) {
+        int count = 0;
+        for (Ast node : nodes)
+            count += count(node);
+        return count;
+    }
+
+    private static int count(Ast ast) {
+        return 1 + count(children(ast));
+    }
+
+    private static List<Ast> children(Ast ast) {
+        List<Ast> children = new ArrayList<>();
+        if (ast instanceof Ast.Statement.Expression) {
+            children.add(((Ast.Statement.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Statement.Declaration) {
+            ((Ast.Statement.Declaration) ast).getValue().ifPresent(children::add);
+        } else if (ast instanceof Ast.Statement.Assignment) {
+            children.addAll(Arrays.asList(((Ast.Statement.Assignment) ast).getReceiver(), ((Ast.Statement.Assignment) ast).getValue()));
+        } else if (ast instanceof Ast.Statement.If) {
+            children.add(((Ast.Statement.If) ast).getCondition());
+            children.addAll(((Ast.Statement.If) ast).getThenStatements());
+            children.addAll(((Ast.Statement.If) ast).getElseStatements());
+        } else if (ast instanceof Ast.Statement.Switch) {
+            children.add(((Ast.Statement.Switch) ast).getCondition());
+            children.addAll(((Ast.Statement.Switch) ast).getCases());
+        } else if (ast instanceof Ast.Statement.Case) {
+            ((Ast.Statement.Case) ast).getValue().ifPresent(children::add);
+            children.addAll(((Ast.Statement.Case) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.While) {
+            children.add(((Ast.Statement.While) ast).getCondition());
+            children.addAll(((Ast.Statement.While) ast).getStatements());
+        } else if (ast instanceof Ast.Statement.Return) {
+            children.add(((Ast.Statement.Return) ast).getValue());
+        } else if (ast instanceof Ast.Expression.Group) {
+            children.add(((Ast.Expression.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expression.Binary) {
+            children.addAll(Arrays.asList(((Ast.Expression.Binary) ast).getLeft(), ((Ast.Expression.Binary) ast).getRight()));
+        } else if (ast instanceof Ast.Expression.Access) {
+            ((Ast.Expression.Access) ast).getOffset().ifPresent(children::add);
+        } else if (ast instanceof Ast.Expression.Function) {
+            children.addAll(((Ast.Expression.Function) ast).getArguments());
+        } else if (ast instanceof Ast.Expression.PlcList) {
+            children.addAll(((Ast.Expression.PlcList) ast).getValues());
+        }
+        return children;
+    }
+
+}
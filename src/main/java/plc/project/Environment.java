@@ -1,5 +1,7 @@
 package plc.project;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -8,10 +10,6 @@ import java.util.Map;
 
 public final class Environment {
 
-    public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
-    }
-
     public static final PlcObject NIL = new PlcObject(Type.NIL, new Scope(null), new Object() {
 
         @Override
@@ -21,6 +19,121 @@ public final class Environment {
 
     });
 
+    public static final PlcObject TRUE = new PlcObject(Type.BOOLEAN, true);
+    public static final PlcObject FALSE = new PlcObject(Type.BOOLEAN, false);
+
+    // Integers in [SMALL_MIN, SMALL_MAX] are created once and shared
+    private static final int SMALL_MIN = -128;
+    private static final int SMALL_MAX = 1024;
+    private static final PlcObject[] SMALL_INTEGERS = new PlcObject[SMALL_MAX - SMALL_MIN + 1];
+
+    static {
+        for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = new PlcObject(BigInteger.valueOf(i + SMALL_MIN), i + SMALL_MIN);
+        }
+    }
+
+    /**
+     * Returns a runtime value. Values share the {@link Type} for their class,
+     * and booleans, NIL and small integers are shared objects, so the only
+     * allocation is the returned object itself, if any.
+     */
+    public static PlcObject create(Object value) {
+        if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            if (integer.bitLength() < 64) {
+                long small = integer.longValue();
+                if (small >= SMALL_MIN && small <= SMALL_MAX) {
+                    return SMALL_INTEGERS[(int) small - SMALL_MIN];
+                }
+                return new PlcObject(integer, small);
+            }
+            return new PlcObject(Type.INTEGER, value);
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof String) {
+            return new PlcObject(Type.STRING, value);
+        } else if (value instanceof BigDecimal) {
+            return new PlcObject(Type.DECIMAL, value);
+        } else if (value instanceof Character) {
+            return new PlcObject(Type.CHARACTER, value);
+        } else if (value == NIL.getValue()) {
+            return NIL;
+        }
+        return new PlcObject(Type.ANY, value);
+    }
+
+    /**
+     * Returns an Integer value held as a long, whose BigInteger value is only
+     * created if {@link PlcObject#getValue()} is called.
+     */
+    public static PlcObject createLong(long value) {
+        if (value >= SMALL_MIN && value <= SMALL_MAX) {
+            return SMALL_INTEGERS[(int) value - SMALL_MIN];
+        }
+        return new PlcObject(null, value);
+    }
+
+    // concatenations at least this long are built in a buffer
+    private static final int TEXT_THRESHOLD = 256;
+
+    /**
+     * Returns the String of the left value followed by the right texts, built
+     * in one buffer sized for all of them. Long results are held in the
+     * buffer, whose String is only created if {@link PlcObject#getValue()} is
+     * called, and appending to such a result extends the same buffer while
+     * nothing else has been appended to it, so repeatedly appending to a
+     * string does not copy it each time.
+     */
+    public static PlcObject concatenate(PlcObject left, String... right) {
+        int added = 0;
+        for (String string : right) {
+            added += string.length();
+        }
+        StringBuilder builder;
+        Text text = left.value instanceof Text ? (Text) left.value : null;
+        // other values sharing a buffer only read their own prefix
+        if (text != null && text.builder.length() == text.length) {
+            builder = text.builder;
+        } else {
+            CharSequence value = text != null ? text.builder : String.valueOf(left.getValue());
+            int length = text != null ? text.length : value.length();
+            if (length + added < TEXT_THRESHOLD) {
+                StringBuilder result = new StringBuilder(length + added).append(value, 0, length);
+                for (String string : right) {
+                    result.append(string);
+                }
+                return new PlcObject(Type.STRING, result.toString());
+            }
+            builder = new StringBuilder(2 * (length + added)).append(value, 0, length);
+        }
+        for (String string : right) {
+            builder.append(string);
+        }
+        return new PlcObject(Type.STRING, new Text(builder, builder.length()));
+    }
+
+    /**
+     * A String held as the first length characters of a buffer, which other
+     * Texts may share and extend.
+     */
+    private static final class Text {
+
+        private final StringBuilder builder;
+        private final int length;
+
+        Text(StringBuilder builder, int length) {
+            this.builder = builder;
+            this.length = length;
+        }
+
+        @Override
+        public String toString() {
+            return builder.substring(0, length);
+        }
+
+    }
+
     private static final Map<String, Type> TYPES = new HashMap<>();
 
     public static Type getType(String name) {
@@ -93,16 +206,40 @@ public final class Environment {
 
         private final Type type;
         private final Scope scope;
-        private final Object value;
+        private Object value;
+        // Integers that fit in a long are also held as one
+        private final boolean isLong;
+        private final long longValue;
 
         public PlcObject(Scope scope, Object value) {
             this(new Type("Unknown", "Unknown", scope), scope, value);
         }
 
+        /**
+         * Creates a value whose scope is the shared scope of its type.
+         */
+        public PlcObject(Type type, Object value) {
+            this(type, type.getScope(), value);
+        }
+
         public PlcObject(Type type, Scope scope, Object value) {
             this.type = type;
             this.scope = scope;
             this.value = value;
+            this.isLong = false;
+            this.longValue = 0;
+        }
+
+        /**
+         * Creates an Integer held as a long, where value is the equal
+         * BigInteger or null to create it when first needed.
+         */
+        private PlcObject(BigInteger value, long longValue) {
+            this.type = Type.INTEGER;
+            this.scope = Type.INTEGER.getScope();
+            this.value = value;
+            this.isLong = true;
+            this.longValue = longValue;
         }
 
         public Type getType() {
@@ -110,15 +247,32 @@ public final class Environment {
         }
 
         public Object getValue() {
+            if (value == null && isLong) {
+                value = BigInteger.valueOf(longValue);
+            } else if (value instanceof Text) {
+                value = value.toString();
+            }
             return value;
         }
 
+        /**
+         * Whether this is an Integer held as a long, which
+         * {@link #getLong()} returns without creating a BigInteger.
+         */
+        public boolean isLong() {
+            return isLong;
+        }
+
+        public long getLong() {
+            return longValue;
+        }
+
         @Override
         public String toString() {
             return "Object{" +
                     "type=" + type +
                     ", scope=" + scope +
-                    ", value=" + value +
+                    ", value=" + getValue() +
                     '}';
         }
 
@@ -197,6 +351,8 @@ public final class Environment {
         private final List<Type> parameterTypes;
         private final Type returnType;
         private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+        private boolean pure = false;
+        private boolean recursive = false;
 
         public Function(String name, int arity, java.util.function.Function<List<PlcObject>, PlcObject> function) {
             this(name, name, new ArrayList<>(), Type.ANY, function);
@@ -234,6 +390,31 @@ public final class Environment {
             return parameterTypes.size();
         }
 
+        /**
+         * Whether the function is known to be free of side effects and to
+         * depend only on its arguments, as determined by the
+         * {@link PurityAnalyzer}. Defaults to false.
+         */
+        public boolean isPure() {
+            return pure;
+        }
+
+        public void setPure(boolean pure) {
+            this.pure = pure;
+        }
+
+        /**
+         * Whether the function can call itself, directly or through other
+         * functions, as determined by the {@link PurityAnalyzer}.
+         */
+        public boolean isRecursive() {
+            return recursive;
+        }
+
+        public void setRecursive(boolean recursive) {
+            this.recursive = recursive;
+        }
+
         public PlcObject invoke(List<PlcObject> arguments) {
             return function.apply(arguments);
         }
@@ -3,11 +3,42 @@ package plc.project;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public final class Generator implements Ast.Visitor<Void> {
 
+    private static final Map<String, String> EXACT = Map.of("+", "addExact", "-", "subtractExact", "*", "multiplyExact", "/", "divideExact");
+
+    // integer exponentiation by squaring, emitted when the source uses ^
+    private static final String[] POW = {
+            "private static int pow$(int base, int exponent) {",
+            "    if (exponent < 0) {",
+            "        return base == -1 && exponent % 2 == 0 ? 1 : 1 / base;",
+            "    }",
+            "    int result = 1;",
+            "    while (exponent > 0) {",
+            "        if ((exponent & 1) == 1) {",
+            "            result = Math.multiplyExact(result, base);",
+            "        }",
+            "        exponent >>= 1;",
+            "        if (exponent > 0) {",
+            "            base = Math.multiplyExact(base, base);",
+            "        }",
+            "    }",
+            "    return result;",
+            "}"
+    };
+
     private final PrintWriter writer;
     private int indent = 0;
+    private boolean power = false;
+    // the function being generated as a loop, whose self tail calls continue it
+    private Ast.Function loop = null;
+    // the number of enclosing switches generated as if statements, which
+    // keeps the names of their conditions distinct
+    private int switches = 0;
 
     public Generator(PrintWriter writer) {
         this.writer = writer;
@@ -58,6 +89,13 @@ public final class Generator implements Ast.Visitor<Void> {
             visit(stmt);
             newline(0);
         }
+        if (power) {
+            for (String line : POW) {
+                newline(indent);
+                print(line);
+            }
+            newline(0);
+        }
         indent--;
         newline(indent);
         print("}");
@@ -100,10 +138,30 @@ public final class Generator implements Ast.Visitor<Void> {
         }
         indent++;
 
+        // a body with self tail calls runs in a loop, so the calls reassign
+        // the parameters instead of growing the stack. Only bodies that return
+        // on every path can loop, which javac checks unless the return type
+        // is Nil, so those have to end in a RETURN.
+        boolean tail = (ast.getStatements().getLast() instanceof Ast.Statement.Return || !ast.getFunction().getReturnType().equals(Environment.Type.NIL))
+                && hasTailCall(ast.getStatements(), ast.getFunction());
+        if (tail) {
+            loop = ast;
+            newline(indent);
+            print("tail:");
+            newline(indent);
+            print("while (true) {");
+            indent++;
+        }
         for (Ast.Statement stmt : ast.getStatements()) {
             newline(indent);
             visit(stmt);
         }
+        if (tail) {
+            loop = null;
+            indent--;
+            newline(indent);
+            print("}");
+        }
 
         indent--;
         newline(indent);
@@ -111,6 +169,38 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Returns true if any of the statements returns a call to the function.
+     */
+    private static boolean hasTailCall(List<Ast.Statement> statements, Environment.Function function) {
+        for (Ast.Statement stmt : statements) {
+            if (stmt instanceof Ast.Statement.Return) {
+                if (isCall(((Ast.Statement.Return) stmt).getValue(), function)) {
+                    return true;
+                }
+            } else if (stmt instanceof Ast.Statement.If) {
+                if (hasTailCall(((Ast.Statement.If) stmt).getThenStatements(), function) || hasTailCall(((Ast.Statement.If) stmt).getElseStatements(), function)) {
+                    return true;
+                }
+            } else if (stmt instanceof Ast.Statement.Switch) {
+                for (Ast.Statement.Case c : ((Ast.Statement.Switch) stmt).getCases()) {
+                    if (hasTailCall(c.getStatements(), function)) {
+                        return true;
+                    }
+                }
+            } else if (stmt instanceof Ast.Statement.While) {
+                if (hasTailCall(((Ast.Statement.While) stmt).getStatements(), function)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCall(Ast.Expression expression, Environment.Function function) {
+        return expression instanceof Ast.Expression.Function && ((Ast.Expression.Function) expression).getFunction() == function;
+    }
+
     @Override
     public Void visit(Ast.Statement.Expression ast) {
         visit(ast.getExpression());
@@ -171,6 +261,20 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Statement.Switch ast) {
+        Environment.Type type = ast.getCondition().getType();
+        boolean constant = ast.getCases().stream().allMatch(stmt -> !stmt.getValue().isPresent() || stmt.getValue().get() instanceof Ast.Expression.Literal);
+        if (constant) {
+            // Java rejects duplicate case labels, though only the first of them matches
+            List<Object> literals = ast.getCases().stream()
+                    .filter(stmt -> stmt.getValue().isPresent())
+                    .map(stmt -> ((Ast.Expression.Literal) stmt.getValue().get()).getLiteral())
+                    .collect(Collectors.toList());
+            constant = literals.stream().distinct().count() == literals.size();
+        }
+        if (!constant || type.equals(Environment.Type.BOOLEAN) || type.equals(Environment.Type.DECIMAL)) {
+            // Java only switches over constants of integral types and strings
+            return visitIfChain(ast);
+        }
         print("switch (");
         visit(ast.getCondition());
         print(") {");
@@ -186,6 +290,59 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Generates a switch as a chain of if statements, comparing a copy of
+     * the condition unless it is a variable or literal.
+     */
+    private Void visitIfChain(Ast.Statement.Switch ast) {
+        Environment.Type type = ast.getCondition().getType();
+        String condition = null;
+        if (!(ast.getCondition() instanceof Ast.Expression.Access || ast.getCondition() instanceof Ast.Expression.Literal)) {
+            condition = "switch$" + switches;
+            print("{");
+            indent++;
+            newline(indent);
+            print(type.getJvmName() + " " + condition + " = ");
+            visit(ast.getCondition());
+            print(";");
+            newline(indent);
+        }
+        switches++;
+        boolean first = true;
+        for (Ast.Statement.Case stmt : ast.getCases()) {
+            if (stmt.getValue().isPresent()) {
+                print(first ? "if (" : " else if (");
+                print(condition != null ? condition : ast.getCondition());
+                if (type.equals(Environment.Type.STRING)) {
+                    print(".equals(", stmt.getValue().get(), ")");
+                } else {
+                    print(" == ", stmt.getValue().get());
+                }
+                print(") {");
+                first = false;
+            } else if (first) {
+                print("{");
+            } else {
+                print(" else {");
+            }
+            indent++;
+            for (Ast.Statement statement : stmt.getStatements()) {
+                newline(indent);
+                visit(statement);
+            }
+            indent--;
+            newline(indent);
+            print("}");
+        }
+        switches--;
+        if (condition != null) {
+            indent--;
+            newline(indent);
+            print("}");
+        }
+        return null;
+    }
+
     @Override
     public Void visit(Ast.Statement.Case ast) {
         if(ast.getValue().isPresent()){
@@ -197,8 +354,11 @@ public final class Generator implements Ast.Visitor<Void> {
                 newline(indent);
                 visit(stmt);
             }
-            newline(indent);
-            print("break;");
+            // a break after a return would be unreachable
+            if (ast.getStatements().isEmpty() || !(ast.getStatements().getLast() instanceof Ast.Statement.Return)) {
+                newline(indent);
+                print("break;");
+            }
             indent--;
         }
         else{
@@ -237,6 +397,29 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Statement.Return ast) {
+        if (loop != null && isCall(ast.getValue(), loop.getFunction())) {
+            // evaluate every argument before reassigning any parameter
+            List<Ast.Expression> arguments = ((Ast.Expression.Function) ast.getValue()).getArguments();
+            List<String> parameters = loop.getParameters();
+            print("{");
+            indent++;
+            for (int i = 0; i < parameters.size(); i++) {
+                newline(indent);
+                print(loop.getFunction().getParameterTypes().get(i).getJvmName() + " " + parameters.get(i) + "$ = ");
+                visit(arguments.get(i));
+                print(";");
+            }
+            for (String parameter : parameters) {
+                newline(indent);
+                print(parameter + " = " + parameter + "$;");
+            }
+            newline(indent);
+            print("continue tail;");
+            indent--;
+            newline(indent);
+            print("}");
+            return null;
+        }
         print("return ");
         visit(ast.getValue());
         print(";");
@@ -273,7 +456,16 @@ public final class Generator implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Expression.Binary ast) {
         if(ast.getOperator().equals("^")){
-            print("Math.pow(");
+            power = true;
+            print("pow$(");
+            visit(ast.getLeft());
+            print(", ");
+            visit(ast.getRight());
+            print(")");
+        }
+        else if(ast.getRange() != null && !ast.getRange().fitsInt() && EXACT.containsKey(ast.getOperator())){
+            // the range analysis could not rule out int overflow, so check it
+            print("Math." + EXACT.get(ast.getOperator()) + "(");
             visit(ast.getLeft());
             print(", ");
             visit(ast.getRight());
@@ -0,0 +1,82 @@
+package plc.project;
+
+import java.math.BigInteger;
+
+/**
+ * Integer operations shared by the interpreters. Exponentiation uses
+ * squaring, so it takes a number of multiplications logarithmic in the
+ * exponent.
+ *
+ * A negative exponent gives {@code 1 / base^-exponent} truncated like integer
+ * division, which is 0 unless the base is 1 or -1.
+ */
+public final class IntegerMath {
+
+    private static final BigInteger MAX_EXPONENT = BigInteger.valueOf(Integer.MAX_VALUE);
+
+    private IntegerMath() {}
+
+    public static BigInteger power(BigInteger base, BigInteger exponent) {
+        if (base.abs().compareTo(BigInteger.ONE) <= 0 || exponent.signum() < 0) {
+            return BigInteger.valueOf(trivialPower(base.signum(), base.abs().equals(BigInteger.ONE), exponent.signum(), exponent.testBit(0)));
+        }
+        if (exponent.compareTo(MAX_EXPONENT) > 0) {
+            throw new RuntimeException("exponent is too large");
+        }
+        return base.pow(exponent.intValue());
+    }
+
+    /**
+     * Returns {@code base^exponent}, throwing an {@link ArithmeticException}
+     * if the result does not fit in a long.
+     */
+    public static long power(long base, long exponent) {
+        if (base >= -1 && base <= 1 || exponent < 0) {
+            return trivialPower(Long.signum(base), base == 1 || base == -1, Long.signum(exponent), (exponent & 1) == 1);
+        }
+        if (exponent >= Long.SIZE) {
+            throw new ArithmeticException("long overflow");
+        }
+        long result = 1;
+        while (true) {
+            if ((exponent & 1) == 1) {
+                result = Math.multiplyExact(result, base);
+            }
+            exponent >>= 1;
+            if (exponent == 0) {
+                return result;
+            }
+            base = Math.multiplyExact(base, base);
+        }
+    }
+
+    /**
+     * Divides like the interpreters, truncating and throwing the same error
+     * for a divisor of zero. Used by code compiled by the {@link JitCompiler}.
+     */
+    public static BigInteger divide(BigInteger dividend, BigInteger divisor) {
+        if (divisor.signum() == 0) {
+            throw new RuntimeException("cannot divide by zero");
+        }
+        return dividend.divide(divisor);
+    }
+
+    /**
+     * Returns the power for a base of -1, 0 or 1, or a negative exponent.
+     */
+    private static long trivialPower(int baseSign, boolean unit, int exponentSign, boolean odd) {
+        if (exponentSign == 0) {
+            return 1;
+        } else if (baseSign == 0) {
+            if (exponentSign < 0) {
+                throw new RuntimeException("cannot divide by zero");
+            }
+            return 0;
+        } else if (!unit) {
+            // 1 / base^-exponent for |base| > 1
+            return 0;
+        }
+        return baseSign < 0 && odd ? -1 : 1;
+    }
+
+}
@@ -1,22 +1,57 @@
 package plc.project;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     private Scope scope = new Scope(null);
+    private int memoCapacity = 0;
+    private final Map<String, MemoCache> caches = new HashMap<>();
+    private int compileThreshold = 0;
+    // the value of an executed RETURN, which stops the statements enclosing it
+    // until the function call completes
+    private Environment.PlcObject returned = null;
+    // a call in a RETURN, made by the function call instead once it returns
+    private Body tailCall = null;
+    private List<Environment.PlcObject> tailArguments = null;
+    private final Map<Environment.Function, Body> bodies = new IdentityHashMap<>();
+    // the functions resolved by each call site, valid while no function has
+    // been defined since
+    private final Map<Ast.Expression.Function, CallSite> callSites = new IdentityHashMap<>();
+    private int definitions = 0;
+    private final Map<Ast.Statement.Switch, Dispatch> dispatches = new IdentityHashMap<>();
+    private final Map<String, HotFunction> hotFunctions = new HashMap<>();
+    // the operands of each chain of String concatenations, by its last +
+    private final Map<Ast.Expression.Binary, Ast.Expression[]> chains = new IdentityHashMap<>();
+
+    private final Output output = new Output();
+    // the number of interpreted function calls in progress, so output is
+    // flushed when the outermost one returns
+    private int calls = 0;
 
     public Interpreter(Scope parent) {
         scope = new Scope(parent);
+        Output output = this.output;
         scope.defineFunction("print", 1, args -> {
-            System.out.println(args.get(0).getValue());
+            output.print(String.valueOf(args.get(0).getValue()));
             return Environment.NIL;
         });
     }
@@ -25,6 +60,72 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return scope;
     }
 
+    /**
+     * Sets where {@code print} writes, such as a {@link java.io.StringWriter}
+     * to capture the output. Anything already printed is flushed first. The
+     * default buffers the output to {@link System#out}.
+     */
+    public void setOutput(Writer output) {
+        this.output.flush();
+        this.output.writer = output;
+    }
+
+    /**
+     * Sets how much output may be buffered before it is flushed: the number
+     * of characters printed, or the time since the last flush, checked when
+     * printing. Output is always flushed once a source or an outermost
+     * function call finishes executing; after visiting anything else, call
+     * {@link #flush()}.
+     */
+    public void setFlushThreshold(int characters, long milliseconds) {
+        output.flushSize = characters;
+        output.flushInterval = TimeUnit.MILLISECONDS.toNanos(milliseconds);
+    }
+
+    /**
+     * Writes the buffered output to the underlying sink.
+     */
+    public void flush() {
+        output.flush();
+    }
+
+    /**
+     * Enables memoization of functions marked pure by the
+     * {@link PurityAnalyzer}, caching up to the given number of results per
+     * function. Applies to functions visited after this call; a capacity of 0
+     * disables memoization (the default).
+     */
+    public void setMemoization(int capacity) {
+        this.memoCapacity = capacity;
+    }
+
+    /**
+     * Returns the result cache of a memoized function, or null if the function
+     * is not memoized.
+     */
+    public MemoCache getCache(String name, int arity) {
+        return caches.get(name + "/" + arity);
+    }
+
+    /**
+     * Enables compilation of functions to JVM classes by the
+     * {@link JitCompiler} once they have been called the given number of
+     * times. Applies to functions visited after this call; a threshold of 0
+     * disables compilation (the default).
+     */
+    public void setCompileThreshold(int calls) {
+        this.compileThreshold = calls;
+    }
+
+    /**
+     * Returns true if the function has been compiled by the
+     * {@link JitCompiler}.
+     */
+    public boolean isCompiled(String name, int arity) {
+        HotFunction function = hotFunctions.get(name + "/" + arity);
+        return function != null && function.compiled;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
         ast.getGlobals().forEach(this::visit);
@@ -33,7 +134,12 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         }
 
         Environment.Function main = scope.lookupFunction("main", 0);
-        return main.invoke(List.of());
+        try {
+            return main.invoke(List.of());
+        }
+        finally {
+            output.flush();
+        }
     }
 
     @Override
@@ -49,30 +155,25 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Function ast) {
-        scope.defineFunction(ast.getName(), ast.getParameters().size(), args -> {
-            scope = new Scope(scope);
-
-            List<Environment.PlcObject> params = new ArrayList();
-
-            for (int i = 0; i < ast.getParameters().size(); i++) {
-                scope.defineVariable(ast.getParameters().get(i), true, args.get(i));
-                params.add(scope.lookupVariable(ast.getParameters().get(i)).getValue());
-            }
-
-            Ast.Expression ret = null;
-            for (Ast.Statement stmt : ast.getStatements()) {
-                if (stmt instanceof Ast.Statement.Return) {
-                    ret = (Ast.Expression) ((Ast.Statement.Return) new Return(visit(stmt)).value.getValue()).getValue();
-                    Environment.PlcObject visret = visit(ret);
-                    scope = scope.getParent();
-                    return visret;
-                }
-                else
-                    visit(stmt);
-            }
-            scope = scope.getParent();
-            return Environment.NIL;
-        });
+        Body body = new Body(ast, scope);
+        java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function = body;
+        if (compileThreshold > 0) {
+            HotFunction hot = new HotFunction(ast, function, compileThreshold);
+            hotFunctions.put(ast.getName() + "/" + ast.getParameters().size(), hot);
+            body.hot = hot;
+            function = hot;
+        }
+        if (memoCapacity > 0 && isPure(ast)) {
+            MemoCache cache = new MemoCache(memoCapacity);
+            caches.put(ast.getName() + "/" + ast.getParameters().size(), cache);
+            function = memoize(function, cache);
+        }
+        scope.defineFunction(ast.getName(), ast.getParameters().size(), function);
+        definitions++;
+        if (function == body || function == body.hot) {
+            // other wrapped functions have to be invoked through their wrapper
+            bodies.put(scope.lookupFunction(ast.getName(), ast.getParameters().size()), body);
+        }
 
         return Environment.NIL;
     }
@@ -101,10 +202,15 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             if(temp.getMutable()){
                 if(((Ast.Expression.Access) ast.getReceiver()).getOffset().isPresent()){
                     //it's a list
-                    Object newVal = visit(ast.getValue()).getValue();
-                    BigInteger offset = (BigInteger) ((Ast.Expression.Literal) ((Ast.Expression.Access) ast.getReceiver()).getOffset().get()).getLiteral();
-                    List<Object> vals = (List<Object>) temp.getValue().getValue();
-                    vals.set(offset.intValue(), newVal);
+                    Environment.PlcObject newVal = visit(ast.getValue());
+                    List<Object> list = (List<Object>) temp.getValue().getValue();
+                    int index = offset((Ast.Expression.Access) ast.getReceiver(), list.size());
+                    if (list instanceof TypedList) {
+                        ((TypedList) list).setElement(index, newVal);
+                    }
+                    else {
+                        list.set(index, newVal.getValue());
+                    }
                 }
                 else{
                     temp.setValue(visit(ast.getValue()));
@@ -119,83 +225,121 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Statement.If ast) {
         if(requireType(Boolean.class, visit(ast.getCondition()))){
-            try{
-                scope = new Scope(scope);
-                ast.getThenStatements().forEach(this::visit);
-            }
-            finally{
-                scope = scope.getParent();
-            }
+            execute(ast.getThenStatements(), null);
         }
-        else if(!requireType(Boolean.class, visit(ast.getCondition()))){
-            try{
-                scope = new Scope(scope);
-                ast.getElseStatements().forEach(this::visit);
-            }
-            finally{
-                scope = scope.getParent();
-            }
+        else{
+            execute(ast.getElseStatements(), null);
         }
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.Switch ast) {
-        boolean found = false;
-        Environment.Variable temp = scope.lookupVariable(((Ast.Expression.Access) ast.getCondition()).getName());
-        Ast.Statement.Case last_case = new Ast.Statement.Case(Optional.empty(),new ArrayList<>());
-
-        for(Ast.Statement.Case stmt : ast.getCases()){
-            if(stmt.getValue().isPresent()){
-                if(temp.getValue().getValue().equals(((Ast.Expression.Literal) stmt.getValue().get()).getLiteral())){
-                    visit(stmt);
-                    found = true;
+        Environment.PlcObject value = visit(ast.getCondition());
+        Dispatch dispatch = dispatches.get(ast);
+        if (dispatch == null) {
+            dispatch = new Dispatch(ast);
+            dispatches.put(ast, dispatch);
+        }
+
+        Ast.Statement.Case selected;
+        if (dispatch.table != null) {
+            selected = dispatch.select(value);
+        }
+        else {
+            // case values that are not literals are evaluated in order
+            selected = dispatch.otherwise;
+            for (Ast.Statement.Case stmt : ast.getCases()) {
+                if (stmt.getValue().isPresent() && Objects.equals(value.getValue(), visit(stmt.getValue().get()).getValue())) {
+                    selected = stmt;
                     break;
                 }
             }
-            last_case = stmt;
         }
-
-        if(!found){
-            //run default
-            visit(last_case);
+        if (selected != null) {
+            visit(selected);
         }
-
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.Case ast) {
-        try{
-            scope = new Scope(scope);
-            ast.getStatements().forEach(this::visit);
-        }
-        finally {
-            scope = scope.getParent();
-        }
+        execute(ast.getStatements(), null);
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.While ast) {
-        while(requireType(Boolean.class, visit(ast.getCondition()))){
-            try{
-                scope = new Scope(scope);
-                ast.getStatements().forEach(this::visit);
-//                for(Ast.Statement stmt : ast.getStatements()){
-//                    visit(stmt);
-//                }
-            }
-            finally {
-                scope = scope.getParent();
-            }
+        // one scope serves every iteration, reset before each
+        Scope frame = declares(ast.getStatements()) ? new Scope(scope) : null;
+        while(returned == null && requireType(Boolean.class, visit(ast.getCondition()))){
+            execute(ast.getStatements(), frame);
         }
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.Return ast) {
-        return new Return(Environment.create(ast)).value;
+        if (ast.getValue() instanceof Ast.Expression.Function) {
+            Ast.Expression.Function call = (Ast.Expression.Function) ast.getValue();
+            Body body = resolve(call).body;
+            // tail calls count towards compiling, and compiled functions are
+            // called directly since they loop for their own tail calls
+            if (body != null && (body.hot == null || !body.hot.count())) {
+                tailArguments = arguments(call);
+                tailCall = body;
+                returned = Environment.NIL;
+                return Environment.NIL;
+            }
+        }
+        returned = visit(ast.getValue());
+        return Environment.NIL;
+    }
+
+    /**
+     * Executes a block in its own scope, using the frame if given after
+     * resetting it. Blocks without declarations define nothing in their
+     * scope, so they run in the enclosing one instead.
+     */
+    private void execute(List<Ast.Statement> statements, Scope frame) {
+        if (!declares(statements)) {
+            execute(statements);
+            return;
+        }
+        if (frame == null) {
+            frame = new Scope(scope);
+        } else {
+            frame.reset();
+        }
+        Scope enclosing = scope;
+        try {
+            scope = frame;
+            execute(statements);
+        }
+        finally {
+            scope = enclosing;
+        }
+    }
+
+    private static boolean declares(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes statements until one of them executes a {@code RETURN}.
+     */
+    private void execute(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            visit(statement);
+            if (returned != null) {
+                return;
+            }
+        }
     }
 
     @Override
@@ -213,215 +357,241 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Expression.Binary ast) {
-        if(ast.getLeft() instanceof Ast.Expression.Binary){
-            visit(ast.getLeft());
+        if(ast.getRange() != null && (ast.getOperator().equals("+") || ast.getOperator().equals("-") || ast.getOperator().equals("*") || ast.getOperator().equals("/"))){
+            return visitIntegerArithmetic(ast);
         }
-        if(ast.getRight() instanceof Ast.Expression.Binary){
-            visit(ast.getRight());
+        String operator = ast.getOperator();
+        if(ast.isConcatenation() && isConcatenation(unwrap(ast.getLeft()))){
+            return visitConcatenation(chains.computeIfAbsent(ast, Interpreter::chain));
         }
-        else if(ast.getOperator().equals("&&") || ast.getOperator().equals("||")){
-            //if left is true and OR
-            if(requireType(Boolean.class, visit(ast.getLeft())) && ast.getOperator().equals("||")){
-                return Environment.create(true);
+        // the right side of a logical operator is only evaluated when needed
+        if(operator.equals("&&") || operator.equals("||")){
+            boolean left = requireType(Boolean.class, visit(ast.getLeft()));
+            if(left == operator.equals("||")){
+                return Environment.create(left);
             }
-            //if left is true and AND
-            else if(requireType(Boolean.class, visit(ast.getLeft())) && ast.getOperator().equals("&&")){
-                //right is true
-                if(requireType(Boolean.class, visit(ast.getRight()))){
-                    return Environment.create(true);
+            return Environment.create(requireType(Boolean.class, visit(ast.getRight())));
+        }
+
+        // every other operator evaluates each side exactly once
+        Environment.PlcObject leftObject = visit(ast.getLeft());
+        Environment.PlcObject rightObject = visit(ast.getRight());
+        // Integers held as longs only become BigIntegers if the result overflows
+        if(leftObject.isLong() && rightObject.isLong()){
+            Environment.PlcObject result = longArithmetic(operator, leftObject.getLong(), rightObject.getLong());
+            if(result != null){
+                return result;
+            }
+        }
+        // a String is appended to without creating the String on the left
+        if(operator.equals("+") && leftObject.getType() == Environment.Type.STRING){
+            return Environment.concatenate(leftObject, String.valueOf(rightObject.getValue()));
+        }
+        Object left = leftObject.getValue();
+        Object right = rightObject.getValue();
+        switch(operator){
+            case ">":
+            case "<":
+                if(!(left instanceof Comparable) || !(right instanceof Comparable)){
+                    throw new RuntimeException("arguments aren't comparable");
                 }
-                //right is false
-                else if(!requireType(Boolean.class, visit(ast.getRight()))){
-                    return Environment.create(false);
+                int comparison;
+                try{
+                    comparison = ((Comparable) left).compareTo(right);
                 }
-                //right is not bool
-                else{
-                    throw new RuntimeException("Right side of binary is not boolean");
+                catch(ClassCastException e){
+                    throw new RuntimeException("sides are not the same type");
                 }
-            }
-            //if left is false and OR
-            else if(!requireType(Boolean.class, visit(ast.getLeft())) && ast.getOperator().equals("||")){
-                //if right is true
-                if(requireType(Boolean.class, visit(ast.getRight()))){
-                    return Environment.create(true);
+                return Environment.create(operator.equals(">") ? comparison > 0 : comparison < 0);
+            case "==":
+                return Environment.create(Objects.equals(left, right));
+            case "!=":
+                return Environment.create(!Objects.equals(left, right));
+            case "+":
+                if(left instanceof String || right instanceof String){
+                    return Environment.create(left.toString() + right);
                 }
-                //if right is false
-                else if(!requireType(Boolean.class, visit(ast.getRight()))){
-                    return Environment.create(false);
+                else if(left instanceof BigInteger && right instanceof BigInteger){
+                    return Environment.create(((BigInteger) left).add((BigInteger) right));
                 }
-                //right is not bool
-                else{
-                    throw new RuntimeException("Right side of binary is not boolean");
+                else if(left instanceof BigDecimal && right instanceof BigDecimal){
+                    return Environment.create(((BigDecimal) left).add((BigDecimal) right));
                 }
-            }
-            //if left is false and AND
-            else if(!requireType(Boolean.class, visit(ast.getLeft())) && ast.getOperator().equals("&&")){
-                //if right is bool
-                if(requireType(Boolean.class, visit(ast.getRight())) || !requireType(Boolean.class, visit(ast.getRight()))){
-                    return Environment.create(false);
+                throw new RuntimeException("types of the sides of the equation do not match");
+            case "-":
+                if(left instanceof BigInteger && right instanceof BigInteger){
+                    return Environment.create(((BigInteger) left).subtract((BigInteger) right));
                 }
-                //right is not bool
-                else{
-                    throw new RuntimeException("Right side of binary is not boolean");
+                else if(left instanceof BigDecimal && right instanceof BigDecimal){
+                    return Environment.create(((BigDecimal) left).subtract((BigDecimal) right));
                 }
-            }
-            // left is not a bool
-            else{
-                throw new RuntimeException("Left side of binary is not boolean");
-            }
-        }
-        else if(ast.getOperator().equals(">") || ast.getOperator().equals("<")){
-            if(Comparable.class.isInstance(visit(ast.getLeft()).getValue()) && Comparable.class.isInstance(visit(ast.getRight()).getValue())){
-                // both sides are the same type of class
-                Comparable temp1;
-                Comparable temp2;
-
-                try{
-                    temp1 = requireType(Comparable.class, visit(ast.getLeft()));
-                    temp2 = requireType(Comparable.class, visit(ast.getRight()));
+                throw new RuntimeException("types of the sides of the equation do not match");
+            case "*":
+                if(left instanceof BigInteger && right instanceof BigInteger){
+                    return Environment.create(((BigInteger) left).multiply((BigInteger) right));
                 }
-                catch(Exception e){
-                    throw new RuntimeException("sides are not the same type");
+                else if(left instanceof BigDecimal && right instanceof BigDecimal){
+                    return Environment.create(((BigDecimal) left).multiply((BigDecimal) right));
                 }
-
-                if(temp1.compareTo(temp2) < 0){
-                    if(ast.getOperator().equals(">")){
-                        return Environment.create(false);
-                    }
-                    else{
-                        return Environment.create(true);
+                throw new RuntimeException("types of the sides of the equation do not match");
+            case "/":
+                if(left instanceof BigInteger && right instanceof BigInteger){
+                    if(((BigInteger) right).signum() == 0){
+                        throw new RuntimeException("cannot divide by zero");
                     }
+                    return Environment.create(((BigInteger) left).divide((BigInteger) right));
                 }
-                else if(temp1.compareTo(temp2) > 0){
-                    if(ast.getOperator().equals(">")){
-                        return Environment.create(true);
-                    }
-                    else{
-                        return Environment.create(false);
+                else if(left instanceof BigDecimal && right instanceof BigDecimal){
+                    if(((BigDecimal) right).signum() == 0){
+                        throw new RuntimeException("cannot divide by zero");
                     }
+                    return Environment.create(((BigDecimal) left).divide((BigDecimal) right, RoundingMode.HALF_EVEN));
                 }
-                else{
-                    return Environment.create(false);
+                throw new RuntimeException("types of the sides of the equation do not match");
+            case "^":
+                if(left instanceof BigInteger && right instanceof BigInteger){
+                    return Environment.create(IntegerMath.power((BigInteger) left, (BigInteger) right));
                 }
-            }
-            else{
-                throw new RuntimeException("arguments aren't comparable");
-            }
+                break;
         }
-        else if(ast.getOperator().equals("==") || ast.getOperator().equals("!=")){
-            if(ast.getLeft().equals(ast.getRight())){
-                if(ast.getOperator().equals("==")){
-                    return Environment.create(true);
-                }
-                return Environment.create(false);
-            }
-            if(ast.getOperator().equals("!=")){
-                return Environment.create(true);
-            }
-            return Environment.create(false);
+        throw new RuntimeException("operator is not the right type");
+    }
+
+    /**
+     * Evaluates the operands of a chain of String concatenations in order and
+     * builds the result in one buffer, instead of creating the String of each
+     * + in the chain.
+     */
+    private Environment.PlcObject visitConcatenation(Ast.Expression[] chain) {
+        Environment.PlcObject first = visit(chain[0]);
+        String[] rest = new String[chain.length - 1];
+        for(int i = 1; i < chain.length; i++){
+            rest[i - 1] = String.valueOf(visit(chain[i]).getValue());
         }
-        else if(ast.getOperator().equals("+")){
-            if(String.class.isInstance(visit(ast.getLeft()).getValue())){
-                String temp1 = requireType(String.class, visit(ast.getLeft()));
-                String temp2 = visit(ast.getRight()).getValue().toString();
-                return Environment.create(temp1 + temp2);
-            }
-            else if(String.class.isInstance(visit(ast.getRight()).getValue())){
-                String temp1 = visit(ast.getLeft()).getValue().toString();
-                String temp2 = requireType(String.class, visit(ast.getRight()));
-                return Environment.create(temp1 + temp2);
-            }
-            else if(BigInteger.class.isInstance(visit(ast.getLeft()).getValue()) && BigInteger.class.isInstance(visit(ast.getRight()).getValue())){
-                BigInteger temp1 = requireType(BigInteger.class, visit(ast.getLeft()));
-                BigInteger temp2 = requireType(BigInteger.class, visit(ast.getRight()));
-                return Environment.create(temp1.add(temp2));
-            }
-            else if(BigDecimal.class.isInstance(visit(ast.getLeft()).getValue()) && BigDecimal.class.isInstance(visit(ast.getRight()).getValue())){
-                BigDecimal temp1 = requireType(BigDecimal.class, visit(ast.getLeft()));
-                BigDecimal temp2 = requireType(BigDecimal.class, visit(ast.getRight()));
-                return Environment.create(temp1.add(temp2));
-            }
-            else{
-                throw new RuntimeException("types of the sides of the equation do not match");
-            }
+        return Environment.concatenate(first, rest);
+    }
+
+    /**
+     * Returns the operands of a left-leaning chain of String concatenations,
+     * such as {@code (s + "a") + b}, in the order they are evaluated.
+     */
+    private static Ast.Expression[] chain(Ast.Expression.Binary ast) {
+        List<Ast.Expression> operands = new ArrayList<>();
+        Ast.Expression expression = ast;
+        while(isConcatenation(expression)){
+            operands.add(((Ast.Expression.Binary) expression).getRight());
+            expression = unwrap(((Ast.Expression.Binary) expression).getLeft());
         }
-        else if(ast.getOperator().equals("-")){
-            if(BigInteger.class.isInstance(visit(ast.getLeft()).getValue()) && BigInteger.class.isInstance(visit(ast.getRight()).getValue())){
-                BigInteger temp1 = requireType(BigInteger.class, visit(ast.getLeft()));
-                BigInteger temp2 = requireType(BigInteger.class, visit(ast.getRight()));
-                return Environment.create(temp1.subtract(temp2));
-            }
-            else if(BigDecimal.class.isInstance(visit(ast.getLeft()).getValue()) && BigDecimal.class.isInstance(visit(ast.getRight()).getValue())){
-                BigDecimal temp1 = requireType(BigDecimal.class, visit(ast.getLeft()));
-                BigDecimal temp2 = requireType(BigDecimal.class, visit(ast.getRight()));
-                return Environment.create(temp1.subtract(temp2));
-            }
-            else{
-                throw new RuntimeException("types of the sides of the equation do not match");
-            }
+        operands.add(expression);
+        Collections.reverse(operands);
+        return operands.toArray(new Ast.Expression[0]);
+    }
+
+    private static boolean isConcatenation(Ast.Expression expression) {
+        return expression instanceof Ast.Expression.Binary && ((Ast.Expression.Binary) expression).isConcatenation();
+    }
+
+    private static Ast.Expression unwrap(Ast.Expression expression) {
+        while(expression instanceof Ast.Expression.Group){
+            expression = ((Ast.Expression.Group) expression).getExpression();
         }
-        else if(ast.getOperator().equals("*")){
-            if(BigInteger.class.isInstance(visit(ast.getLeft()).getValue()) && BigInteger.class.isInstance(visit(ast.getRight()).getValue())){
-                BigInteger temp1 = requireType(BigInteger.class, visit(ast.getLeft()));
-                BigInteger temp2 = requireType(BigInteger.class, visit(ast.getRight()));
-                return Environment.create(temp1.multiply(temp2));
-            }
-            else if(BigDecimal.class.isInstance(visit(ast.getLeft()).getValue()) && BigDecimal.class.isInstance(visit(ast.getRight()).getValue())){
-                BigDecimal temp1 = requireType(BigDecimal.class, visit(ast.getLeft()));
-                BigDecimal temp2 = requireType(BigDecimal.class, visit(ast.getRight()));
-                return Environment.create(temp1.multiply(temp2));
+        return expression;
+    }
+
+    /**
+     * Evaluates Integer arithmetic annotated by the {@link RangeAnalyzer}. When
+     * both operands are longs within their analyzed ranges, the ranges prove
+     * the result fits in a long and it is computed without overflow checks;
+     * otherwise it is computed like any other arithmetic.
+     */
+    private Environment.PlcObject visitIntegerArithmetic(Ast.Expression.Binary ast) {
+        Environment.PlcObject left = visit(ast.getLeft());
+        Environment.PlcObject right = visit(ast.getRight());
+        if (left.isLong() && right.isLong()) {
+            long x = left.getLong();
+            long y = right.getLong();
+            RangeAnalyzer.Range leftRange = RangeAnalyzer.rangeOf(ast.getLeft());
+            RangeAnalyzer.Range rightRange = RangeAnalyzer.rangeOf(ast.getRight());
+            boolean proven = ast.getRange().fitsLong()
+                    && leftRange != null && leftRange.contains(x)
+                    && rightRange != null && rightRange.contains(y);
+            if (proven) {
+                switch (ast.getOperator()) {
+                    case "+":
+                        return Environment.createLong(x + y);
+                    case "-":
+                        return Environment.createLong(x - y);
+                    case "*":
+                        return Environment.createLong(x * y);
+                    default:
+                        if (y == 0) {
+                            throw new RuntimeException("cannot divide by zero");
+                        }
+                        return Environment.createLong(x / y);
+                }
             }
-            else{
-                throw new RuntimeException("types of the sides of the equation do not match");
+            Environment.PlcObject result = longArithmetic(ast.getOperator(), x, y);
+            if (result != null) {
+                return result;
             }
         }
-        else if(ast.getOperator().equals("/")){
-            if(BigInteger.class.isInstance(visit(ast.getLeft()).getValue()) && BigInteger.class.isInstance(visit(ast.getRight()).getValue())){
-                BigInteger temp1 = requireType(BigInteger.class, visit(ast.getLeft()));
-                BigInteger temp2 = requireType(BigInteger.class, visit(ast.getRight()));
-                if(temp2.equals(BigInteger.ZERO)){
-                    throw new RuntimeException("cannot divide by zero");
-                }
-                return Environment.create(temp2.divide(temp1));
-            }
-            else if(BigDecimal.class.isInstance(visit(ast.getLeft()).getValue()) && BigDecimal.class.isInstance(visit(ast.getRight()).getValue())){
-                BigDecimal temp1 = requireType(BigDecimal.class, visit(ast.getLeft()));
-                BigDecimal temp2 = requireType(BigDecimal.class, visit(ast.getRight()));
-                if(temp2.equals(BigDecimal.ZERO)){
+
+        BigInteger x = requireType(BigInteger.class, left);
+        BigInteger y = requireType(BigInteger.class, right);
+        switch (ast.getOperator()) {
+            case "+":
+                return Environment.create(x.add(y));
+            case "-":
+                return Environment.create(x.subtract(y));
+            case "*":
+                return Environment.create(x.multiply(y));
+            default:
+                if (y.signum() == 0) {
                     throw new RuntimeException("cannot divide by zero");
                 }
-                return Environment.create(temp1.divide(temp2, RoundingMode.HALF_EVEN));
-            }
-            else{
-                throw new RuntimeException("types of the sides of the equation do not match");
-            }
+                return Environment.create(x.divide(y));
         }
-        else if(ast.getOperator().equals("^")){
-            if(BigInteger.class.isInstance(visit(ast.getLeft()).getValue()) && BigInteger.class.isInstance(visit(ast.getRight()).getValue())){
-                BigInteger temp1 = requireType(BigInteger.class, visit(ast.getLeft()));
-                BigInteger temp2 = requireType(BigInteger.class, visit(ast.getRight()));
+    }
 
-                if(temp2.compareTo(BigInteger.ZERO) > 0){
-                    BigInteger temp3 = requireType(BigInteger.class, visit(ast.getLeft()));
-                    while(!temp2.equals(BigInteger.ONE)){
-                        temp3 = temp3.multiply(temp1);
-                        temp2 = temp2.subtract(BigInteger.ONE);
+    /**
+     * Evaluates an operator on Integers held as longs, returning null if the
+     * result overflows a long or the operator is not supported, in which
+     * case the operands are evaluated as BigIntegers.
+     */
+    private static Environment.PlcObject longArithmetic(String operator, long x, long y) {
+        try {
+            switch (operator) {
+                case "+":
+                    return Environment.createLong(Math.addExact(x, y));
+                case "-":
+                    return Environment.createLong(Math.subtractExact(x, y));
+                case "*":
+                    return Environment.createLong(Math.multiplyExact(x, y));
+                case "/":
+                    if (y == 0) {
+                        throw new RuntimeException("cannot divide by zero");
                     }
-                    return Environment.create(temp3);
-                }
-                // temp2 < 0
-                else if(temp2.compareTo(BigInteger.ZERO) < 0){
-                    BigInteger temp3 = requireType(BigInteger.class, visit(ast.getLeft()));
-                    while(!temp2.equals(BigInteger.ONE.negate())){
-                        temp3 = temp3.multiply(temp1);
-                        temp2 = temp2.add(BigInteger.ONE);
+                    // the only quotient that overflows
+                    if (x == Long.MIN_VALUE && y == -1) {
+                        return null;
                     }
-                    temp3 = BigInteger.ONE.divide(temp3);
-                    return Environment.create(temp3);
-                }
-            }
+                    return Environment.createLong(x / y);
+                case "^":
+                    return Environment.createLong(IntegerMath.power(x, y));
+                case "<":
+                    return Environment.create(x < y);
+                case ">":
+                    return Environment.create(x > y);
+                case "==":
+                    return Environment.create(x == y);
+                case "!=":
+                    return Environment.create(x != y);
+                default:
+                    return null;
+            }
+        } catch (ArithmeticException e) {
+            return null;
         }
-        throw new RuntimeException("operator is not the right type");
     }
 
     @Override
@@ -431,59 +601,359 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             return var.getValue();
         }
         else {
-            Ast.Expression.Literal lit = (Ast.Expression.Literal) ast.getOffset().get();
-            List arr = (List) var.getValue().getValue();
-            return Environment.create(arr.get(((BigInteger) lit.getLiteral()).intValue()));
+            List<?> list = (List<?>) var.getValue().getValue();
+            int index = offset(ast, list.size());
+            if (list instanceof TypedList) {
+                return ((TypedList) list).getElement(index);
+            }
+            return Environment.create(list.get(index));
         }
     }
 
+    /**
+     * Evaluates the index of a list access, throwing if it is outside the
+     * list. Offsets the {@link BoundsAnalyzer} proved to be in bounds are not
+     * checked again.
+     */
+    private int offset(Ast.Expression.Access ast, int size) {
+        Environment.PlcObject index = visit(ast.getOffset().get());
+        if (ast.isInBounds() && index.isLong()) {
+            return (int) index.getLong();
+        }
+        return index(index, size);
+    }
+
+    /**
+     * Returns the Integer value as an index of a list of the given size,
+     * throwing if it is outside the list. Integers held as longs are checked
+     * without creating a BigInteger. Also used by the
+     * {@link ClosureInterpreter}, so both report the same error.
+     */
+    static int index(Environment.PlcObject index, int size) {
+        if (index.isLong()) {
+            long offset = index.getLong();
+            if (offset >= 0 && offset < size) {
+                return (int) offset;
+            }
+        }
+        else {
+            BigInteger offset = requireType(BigInteger.class, index);
+            if (offset.signum() >= 0 && offset.compareTo(BigInteger.valueOf(size)) < 0) {
+                return offset.intValue();
+            }
+        }
+        throw new RuntimeException("The index " + index.getValue() + " is out of bounds for a list of size " + size + ".");
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Expression.Function ast) {
-        int arity = ast.getArguments().size();
-        Environment.Function function = scope.lookupFunction(ast.getName(), arity);
+        return resolve(ast).function.invoke(arguments(ast));
+    }
 
+    /**
+     * Returns the function a call site refers to, looking it up only on the
+     * first call and after functions have been defined.
+     */
+    private CallSite resolve(Ast.Expression.Function ast) {
+        CallSite site = callSites.get(ast);
+        if (site == null || site.definitions != definitions) {
+            Environment.Function function = scope.lookupFunction(ast.getName(), ast.getArguments().size());
+            site = new CallSite(function, bodies.get(function), definitions);
+            callSites.put(ast, site);
+        }
+        return site;
+    }
+
+    private List<Environment.PlcObject> arguments(Ast.Expression.Function ast) {
         List<Environment.PlcObject> args = new ArrayList();
 
         for (Ast.Expression exp : ast.getArguments())
             args.add(visit(exp));
 
-        return function.invoke(args);
+        return args;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expression.PlcList ast) {
         List<Ast.Expression> valsList = ast.getValues();
-        List<Object> vals = new ArrayList<>();
+        List<Environment.PlcObject> vals = new ArrayList<>(valsList.size());
 
         for (Ast.Expression i : valsList) {
-            vals.add(((Ast.Expression.Literal) i).getLiteral());
+            vals.add(visit(i));
         }
 
-        return Environment.create(vals);
+        return Environment.create(TypedList.of(elementType(ast), vals));
+    }
+
+    private static Environment.Type elementType(Ast.Expression.PlcList ast) {
+        try {
+            return ast.getType();
+        } catch (IllegalStateException e) {
+            // not analyzed, so the type follows the values
+            return null;
+        }
+    }
+
+    private static boolean isPure(Ast.Function ast) {
+        try {
+            return ast.getFunction().isPure();
+        } catch (IllegalStateException e) {
+            // not analyzed, so purity is unknown
+            return false;
+        }
     }
 
     /**
-     * Helper function to ensure an object is of the appropriate type.
+     * Wraps a function so calls with immutable argument values are served
+     * from the cache. Calls with other arguments (such as lists, which may be
+     * modified between calls) are always executed, and results that are not
+     * immutable are not cached, since every caller would share them.
      */
-    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
-        if (type.isInstance(object.getValue())) {
-            return type.cast(object.getValue());
-        } else {
-            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+    private static java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> memoize(java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function, MemoCache cache) {
+        return args -> {
+            List<Object> key = new ArrayList<>(args.size());
+            for (Environment.PlcObject arg : args) {
+                Object value = arg.getValue();
+                if (!isImmutable(value)) {
+                    return function.apply(args);
+                }
+                key.add(value);
+            }
+            Environment.PlcObject result = cache.lookup(key);
+            if (result == null) {
+                result = function.apply(args);
+                if (isImmutable(result.getValue())) {
+                    cache.store(key, result);
+                }
+            }
+            return result;
+        };
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof BigInteger || value instanceof BigDecimal || value instanceof String || value instanceof Character || value instanceof Boolean;
+    }
+
+    /**
+     * The output of {@code print}, buffered and flushed once the unflushed
+     * characters or the time since the last flush reach the thresholds.
+     */
+    private static final class Output {
+
+        private Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16);
+        private int flushSize = 1 << 16;
+        private long flushInterval = TimeUnit.MILLISECONDS.toNanos(100);
+        private int unflushed = 0;
+        private long flushed = System.nanoTime();
+
+        void print(String line) {
+            try {
+                writer.write(line);
+                writer.write(System.lineSeparator());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            unflushed += line.length() + System.lineSeparator().length();
+            if (unflushed >= flushSize || System.nanoTime() - flushed >= flushInterval) {
+                flush();
+            }
+        }
+
+        void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            unflushed = 0;
+            flushed = System.nanoTime();
+        }
+
+    }
+
+    /**
+     * Selects the case of a switch whose cases are all literals without
+     * comparing the value to each case. Integer cases spanning a small range
+     * are also indexed by their offset from the smallest one.
+     */
+    private static final class Dispatch {
+
+        private final Map<Object, Ast.Statement.Case> table;
+        private final Ast.Statement.Case otherwise;
+        private Ast.Statement.Case[] dense = null;
+        private long min = 0;
+
+        Dispatch(Ast.Statement.Switch ast) {
+            Map<Object, Ast.Statement.Case> table = new HashMap<>();
+            boolean literals = true;
+            Ast.Statement.Case otherwise = null;
+            for (Ast.Statement.Case stmt : ast.getCases()) {
+                if (!stmt.getValue().isPresent()) {
+                    otherwise = stmt;
+                }
+                else if (stmt.getValue().get() instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) stmt.getValue().get()).getLiteral() != null) {
+                    // the first of duplicate cases is selected
+                    table.putIfAbsent(((Ast.Expression.Literal) stmt.getValue().get()).getLiteral(), stmt);
+                }
+                else {
+                    // the DEFAULT is still recorded for the cases evaluated in order
+                    literals = false;
+                }
+            }
+            table = literals ? table : null;
+            this.table = table;
+            this.otherwise = otherwise;
+            if (table != null && !table.isEmpty() && table.keySet().stream().allMatch(key -> key instanceof BigInteger && ((BigInteger) key).bitLength() < Integer.SIZE)) {
+                long min = table.keySet().stream().mapToLong(key -> ((BigInteger) key).longValue()).min().getAsLong();
+                long max = table.keySet().stream().mapToLong(key -> ((BigInteger) key).longValue()).max().getAsLong();
+                if (max - min < 2L * table.size() + 16) {
+                    this.min = min;
+                    dense = new Ast.Statement.Case[(int) (max - min + 1)];
+                    table.forEach((key, stmt) -> dense[(int) (((BigInteger) key).longValue() - this.min)] = stmt);
+                }
+            }
         }
+
+        Ast.Statement.Case select(Environment.PlcObject value) {
+            Ast.Statement.Case selected;
+            if (dense != null && value.isLong()) {
+                // negative if the value is below the range or so far above it that the subtraction overflows
+                long offset = value.getLong() - min;
+                selected = offset >= 0 && offset < dense.length ? dense[(int) offset] : null;
+            }
+            else {
+                selected = table.get(value.getValue());
+            }
+            return selected != null ? selected : otherwise;
+        }
+
+    }
+
+    private static final class CallSite {
+
+        private final Environment.Function function;
+        // the interpreted function, if it can be called from a tail RETURN
+        private final Body body;
+        private final int definitions;
+
+        CallSite(Environment.Function function, Body body, int definitions) {
+            this.function = function;
+            this.body = body;
+            this.definitions = definitions;
+        }
+
     }
 
     /**
-     * Exception class for returning values.
+     * An interpreted function, which runs in a scope nested in the one it is
+     * defined in. Calls in a {@code RETURN} to other interpreted functions
+     * are made by the loop here after the body returns, so tail recursion,
+     * including mutual recursion, runs in constant stack and a single scope.
      */
-    private static class Return extends RuntimeException {
+    private final class Body implements java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> {
+
+        private final Ast.Function ast;
+        private final Scope definition;
+        // the wrapper counting calls for the JitCompiler, if any
+        private HotFunction hot = null;
 
-        private final Environment.PlcObject value;
+        Body(Ast.Function ast, Scope definition) {
+            this.ast = ast;
+            this.definition = definition;
+        }
 
-        public Return(Environment.PlcObject value) {
-            this.value = value;
+        @Override
+        public Environment.PlcObject apply(List<Environment.PlcObject> args) {
+            Scope caller = scope;
+            Body body = this;
+            Scope frame = null;
+            calls++;
+            try {
+                while (true) {
+                    // a tail call to a function defined in the same scope reuses the frame
+                    if (frame != null && frame.getParent() == body.definition) {
+                        frame.reset();
+                    } else {
+                        frame = new Scope(body.definition);
+                    }
+                    scope = frame;
+                    for (int i = 0; i < body.ast.getParameters().size(); i++) {
+                        scope.defineVariable(body.ast.getParameters().get(i), true, args.get(i));
+                    }
+                    execute(body.ast.getStatements());
+                    if (tailCall == null) {
+                        return returned != null ? returned : Environment.NIL;
+                    }
+                    body = tailCall;
+                    args = tailArguments;
+                    tailCall = null;
+                    tailArguments = null;
+                    returned = null;
+                }
+            }
+            finally {
+                tailCall = null;
+                tailArguments = null;
+                returned = null;
+                scope = caller;
+                if (--calls == 0 && output.unflushed > 0) {
+                    output.flush();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Counts calls of an interpreted function and compiles it once it reaches
+     * the threshold, after which calls use the compiled version. Functions
+     * the {@link JitCompiler} does not support stay interpreted.
+     */
+    private static final class HotFunction implements java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> {
+
+        private final Ast.Function ast;
+        private java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> target;
+        private int remaining;
+        private boolean compiled = false;
+
+        HotFunction(Ast.Function ast, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> target, int threshold) {
+            this.ast = ast;
+            this.target = target;
+            this.remaining = threshold;
+        }
+
+        @Override
+        public Environment.PlcObject apply(List<Environment.PlcObject> args) {
+            count();
+            return target.apply(args);
+        }
+
+        /**
+         * Counts a call, compiling the function at the threshold, and returns
+         * true if it is compiled.
+         */
+        boolean count() {
+            if (remaining > 0 && --remaining == 0) {
+                java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> compiled = JitCompiler.compile(ast, target);
+                if (compiled != null) {
+                    target = compiled;
+                    this.compiled = true;
+                }
+            }
+            return compiled;
+        }
+
+    }
+
+    /**
+     * Helper function to ensure an object is of the appropriate type.
+     */
+    private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
         }
-        //return to private?
     }
 
 }
\ No newline at end of file
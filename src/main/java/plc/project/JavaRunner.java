@@ -0,0 +1,231 @@
+package plc.project;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the Java source written by the {@link Generator} in memory and
+ * runs it in this JVM, capturing the value returned by {@code main} (the
+ * program's exit code) and everything printed to standard output.
+ *
+ * Compiled classes are cached by the SHA-256 hash of their source, so
+ * running the same program again skips compilation.
+ */
+public final class JavaRunner {
+
+    private static final String CLASS = "Main";
+
+    private final Map<String, Class<?>> cache = new HashMap<>();
+    private int compilations = 0;
+
+    /**
+     * Generates, compiles and runs an analyzed source.
+     */
+    public Result run(Ast.Source ast) {
+        StringWriter source = new StringWriter();
+        new Generator(new PrintWriter(source)).visit(ast);
+        return run(source.toString());
+    }
+
+    /**
+     * Compiles (unless cached) and runs a generated {@code Main} class.
+     * Exceptions thrown by the program are rethrown.
+     */
+    public Result run(String source) {
+        Class<?> main = compile(source);
+        Object instance;
+        Method method;
+        try {
+            Constructor<?> constructor = main.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            instance = constructor.newInstance();
+            // the instance main, since the static one calls System.exit
+            method = main.getDeclaredMethod("main");
+            method.setAccessible(true);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("The generated class does not declare int main().", e);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        synchronized (JavaRunner.class) {
+            PrintStream sysout = System.out;
+            System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+            try {
+                int exitCode = (Integer) method.invoke(instance);
+                System.out.flush();
+                return new Result(exitCode, output.toString(StandardCharsets.UTF_8));
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            } finally {
+                System.setOut(sysout);
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled {@code Main} class for the source, compiling it if
+     * it is not cached.
+     */
+    public Class<?> compile(String source) {
+        String hash = hash(source);
+        Class<?> main = cache.get(hash);
+        if (main == null) {
+            main = load(source);
+            compilations++;
+            cache.put(hash, main);
+        }
+        return main;
+    }
+
+    /**
+     * Returns the number of sources compiled, excluding cached ones.
+     */
+    public int getCompilations() {
+        return compilations;
+    }
+
+    private static Class<?> load(String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No Java compiler is available; a JDK is required.");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        try (MemoryFileManager files = new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8), classes)) {
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + CLASS + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            if (!compiler.getTask(null, files, diagnostics, List.of("-nowarn"), null, List.of(file)).call()) {
+                StringBuilder message = new StringBuilder("The generated source does not compile:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    message.append(System.lineSeparator()).append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null));
+                }
+                throw new RuntimeException(message.toString());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try {
+            return new MemoryClassLoader(classes).loadClass(CLASS);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("The generated source does not declare class " + CLASS + ".", e);
+        }
+    }
+
+    private static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static final class Result {
+
+        private final int exitCode;
+        private final String output;
+
+        public Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+    }
+
+    /**
+     * Keeps the compiled class files in memory instead of writing them out.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        MemoryFileManager(StandardJavaFileManager files, Map<String, ByteArrayOutputStream> classes) {
+            super(files);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    classes.put(name, bytes);
+                    return bytes;
+                }
+            };
+        }
+
+    }
+
+    /**
+     * Loads the classes of one compiled source, so each program gets its own
+     * {@code Main}.
+     */
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        MemoryClassLoader(Map<String, ByteArrayOutputStream> classes) {
+            super(JavaRunner.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            ByteArrayOutputStream bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+        }
+
+    }
+
+}
@@ -0,0 +1,525 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an analyzed {@link Ast.Function} into a JVM class with a single
+ * static method, loaded as a hidden class. Used by the {@link Interpreter}
+ * for functions called more often than its compile threshold.
+ *
+ * Only functions over Integers are supported: Integer parameters, locals and
+ * return type, arithmetic ({@code + - * /}), comparisons and logical
+ * operators in conditions, {@code IF}, {@code WHILE}, {@code RETURN}, and
+ * calls of the function itself, with tail calls compiled as jumps back to
+ * the start. Values are {@link BigInteger}s, so results match the
+ * interpreter exactly. Anything else makes {@link #compile} return null and
+ * the function stays interpreted.
+ *
+ * Classes are written for class file version 49, which does not require
+ * stack map frames.
+ */
+public final class JitCompiler implements Ast.Visitor<Void> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String CLASS = "plc/project/CompiledFunction";
+    private static final String METHOD = "invoke";
+    private static final String BIG_INTEGER = "java/math/BigInteger";
+    private static final String BIG_INTEGER_TYPE = "L" + BIG_INTEGER + ";";
+    private static final String INTEGER_MATH = "plc/project/IntegerMath";
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD = 0x19;
+    private static final int ASTORE = 0x3a;
+    private static final int POP = 0x57;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    private static final int GOTO = 0xa7;
+    private static final int ARETURN = 0xb0;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private static final Map<String, String> ARITHMETIC = Map.of("+", "add", "-", "subtract", "*", "multiply", "/", "divide");
+
+    private final Ast.Function function;
+    private final String descriptor;
+    private final ConstantPool pool = new ConstantPool();
+    private final List<Map<String, Integer>> scopes = new ArrayList<>();
+    private byte[] code = new byte[256];
+    private int length = 0;
+    private int depth = 0;
+    private int maxStack = 0;
+    private int locals = 0;
+
+    private JitCompiler(Ast.Function function) {
+        this.function = function;
+        this.descriptor = "(" + BIG_INTEGER_TYPE.repeat(function.getParameters().size()) + ")" + BIG_INTEGER_TYPE;
+    }
+
+    /**
+     * Compiles the function, returning an implementation running the compiled
+     * code, or null if the function is not analyzed or uses unsupported
+     * constructs. Calls with arguments that are not Integers are passed on to
+     * the fallback.
+     */
+    public static java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> compile(Ast.Function ast, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> fallback) {
+        MethodHandle handle;
+        try {
+            Environment.Function signature = ast.getFunction();
+            if (signature.getReturnType() != Environment.Type.INTEGER || signature.getParameterTypes().stream().anyMatch(type -> type != Environment.Type.INTEGER)) {
+                return null;
+            }
+            JitCompiler compiler = new JitCompiler(ast);
+            compiler.visit(ast);
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(compiler.toClassFile(), true);
+            handle = lookup.findStatic(lookup.lookupClass(), METHOD, MethodType.fromMethodDescriptorString(compiler.descriptor, null))
+                    .asSpreader(Object[].class, ast.getParameters().size())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (Unsupported | IllegalStateException e) {
+            // unsupported or not analyzed, so keep interpreting
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Generated an invalid class for " + ast.getName() + ".", e);
+        }
+
+        return args -> {
+            Object[] values = new Object[args.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = args.get(i).getValue();
+                if (!(values[i] instanceof BigInteger)) {
+                    return fallback.apply(args);
+                }
+            }
+            Object result;
+            try {
+                result = (Object) handle.invokeExact(values);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+            return result != null ? Environment.create(result) : Environment.NIL;
+        };
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        scopes.add(new HashMap<>());
+        for (String parameter : ast.getParameters()) {
+            declare(parameter);
+        }
+        ast.getStatements().forEach(this::visit);
+        // falling off the end returns NIL
+        emit(ACONST_NULL, 1);
+        emit(ARETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        emit(POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        if (!ast.getValue().isPresent()) {
+            throw new Unsupported();
+        }
+        visit(ast.getValue().get());
+        emit(ASTORE, -1, declare(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expression.Access) || ((Ast.Expression.Access) ast.getReceiver()).getOffset().isPresent()) {
+            throw new Unsupported();
+        }
+        visit(ast.getValue());
+        emit(ASTORE, -1, lookup(((Ast.Expression.Access) ast.getReceiver()).getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        List<Integer> otherwise = jumpIf(ast.getCondition(), false);
+        block(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            otherwise.forEach(this::patch);
+        } else {
+            int end = branch(GOTO, 0);
+            otherwise.forEach(this::patch);
+            block(ast.getElseStatements());
+            patch(end);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        int start = length;
+        List<Integer> end = jumpIf(ast.getCondition(), false);
+        block(ast.getStatements());
+        int back = branch(GOTO, 0);
+        patch(back, start);
+        end.forEach(this::patch);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        if (ast.getValue() instanceof Ast.Expression.Function && ((Ast.Expression.Function) ast.getValue()).getFunction() == function.getFunction()) {
+            // a self tail call assigns the parameters and restarts the
+            // method, so tail recursion runs in constant stack
+            List<Ast.Expression> arguments = ((Ast.Expression.Function) ast.getValue()).getArguments();
+            arguments.forEach(this::visit);
+            for (int i = arguments.size() - 1; i >= 0; i--) {
+                emit(ASTORE, -1, i);
+            }
+            patch(branch(GOTO, 0), 0);
+            return null;
+        }
+        visit(ast.getValue());
+        emit(ARETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        if (!(ast.getLiteral() instanceof BigInteger) || ((BigInteger) ast.getLiteral()).bitLength() > 63) {
+            throw new Unsupported();
+        }
+        emit(LDC2_W, 2, u2(pool.longConstant(((BigInteger) ast.getLiteral()).longValue())));
+        emit(INVOKESTATIC, -1, u2(pool.method(BIG_INTEGER, "valueOf", "(J)" + BIG_INTEGER_TYPE)));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        if (ast.getType() != Environment.Type.INTEGER || !ARITHMETIC.containsKey(ast.getOperator())) {
+            throw new Unsupported();
+        }
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        if (ast.getOperator().equals("/")) {
+            // checked for zero like the interpreters
+            emit(INVOKESTATIC, -1, u2(pool.method(INTEGER_MATH, "divide", "(" + BIG_INTEGER_TYPE + BIG_INTEGER_TYPE + ")" + BIG_INTEGER_TYPE)));
+        } else {
+            emit(INVOKEVIRTUAL, -1, u2(pool.method(BIG_INTEGER, ARITHMETIC.get(ast.getOperator()), "(" + BIG_INTEGER_TYPE + ")" + BIG_INTEGER_TYPE)));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            throw new Unsupported();
+        }
+        emit(ALOAD, 1, lookup(ast.getName()));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        if (ast.getFunction() != function.getFunction()) {
+            throw new Unsupported();
+        }
+        ast.getArguments().forEach(this::visit);
+        emit(INVOKESTATIC, 1 - ast.getArguments().size(), u2(pool.method(CLASS, METHOD, descriptor)));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        throw new Unsupported();
+    }
+
+    /**
+     * Emits a test of a Boolean condition that jumps when it evaluates to the
+     * given value and falls through otherwise, returning the jumps to patch.
+     */
+    private List<Integer> jumpIf(Ast.Expression ast, boolean when) {
+        List<Integer> jumps = new ArrayList<>();
+        if (ast instanceof Ast.Expression.Group) {
+            return jumpIf(((Ast.Expression.Group) ast).getExpression(), when);
+        } else if (ast instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) ast).getLiteral() instanceof Boolean) {
+            if (((Ast.Expression.Literal) ast).getLiteral().equals(when)) {
+                jumps.add(branch(GOTO, 0));
+            }
+            return jumps;
+        } else if (!(ast instanceof Ast.Expression.Binary)) {
+            throw new Unsupported();
+        }
+
+        Ast.Expression.Binary binary = (Ast.Expression.Binary) ast;
+        switch (binary.getOperator()) {
+            case "&&":
+            case "||": {
+                // jump once either side decides the result, which is when an
+                // && side is false or an || side is true
+                boolean decisive = binary.getOperator().equals("||");
+                if (when == decisive) {
+                    jumps.addAll(jumpIf(binary.getLeft(), when));
+                    jumps.addAll(jumpIf(binary.getRight(), when));
+                } else {
+                    List<Integer> decided = jumpIf(binary.getLeft(), decisive);
+                    jumps.addAll(jumpIf(binary.getRight(), when));
+                    decided.forEach(this::patch);
+                }
+                return jumps;
+            }
+            case "<":
+            case ">":
+                requireIntegers(binary);
+                visit(binary.getLeft());
+                visit(binary.getRight());
+                emit(INVOKEVIRTUAL, -1, u2(pool.method(BIG_INTEGER, "compareTo", "(" + BIG_INTEGER_TYPE + ")I")));
+                if (binary.getOperator().equals("<"))
+                    jumps.add(branch(when ? IFLT : IFGE, -1));
+                else
+                    jumps.add(branch(when ? IFGT : IFLE, -1));
+                return jumps;
+            case "==":
+            case "!=":
+                requireIntegers(binary);
+                visit(binary.getLeft());
+                visit(binary.getRight());
+                emit(INVOKEVIRTUAL, -1, u2(pool.method(BIG_INTEGER, "equals", "(Ljava/lang/Object;)Z")));
+                jumps.add(branch(when == binary.getOperator().equals("==") ? IFNE : IFEQ, -1));
+                return jumps;
+            default:
+                throw new Unsupported();
+        }
+    }
+
+    private static void requireIntegers(Ast.Expression.Binary ast) {
+        if (ast.getLeft().getType() != Environment.Type.INTEGER || ast.getRight().getType() != Environment.Type.INTEGER) {
+            throw new Unsupported();
+        }
+    }
+
+    private void block(List<Ast.Statement> statements) {
+        scopes.add(new HashMap<>());
+        statements.forEach(this::visit);
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private int declare(String name) {
+        if (locals == 255) {
+            throw new Unsupported();
+        }
+        scopes.get(scopes.size() - 1).put(name, locals);
+        return locals++;
+    }
+
+    private int lookup(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            if (scopes.get(i).containsKey(name)) {
+                return scopes.get(i).get(name);
+            }
+        }
+        // globals are not supported
+        throw new Unsupported();
+    }
+
+    private void emit(int opcode, int delta, int... operands) {
+        if (length + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = (byte) opcode;
+        for (int operand : operands) {
+            code[length++] = (byte) operand;
+        }
+        depth += delta;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    /**
+     * Emits a branch with an unknown target and returns its position, to be
+     * set by {@link #patch(int)}.
+     */
+    private int branch(int opcode, int delta) {
+        emit(opcode, delta, 0, 0);
+        return length - 3;
+    }
+
+    private void patch(int branch) {
+        patch(branch, length);
+    }
+
+    private void patch(int branch, int target) {
+        int offset = target - branch;
+        if (offset != (short) offset) {
+            throw new Unsupported();
+        }
+        code[branch + 1] = (byte) (offset >> 8);
+        code[branch + 2] = (byte) offset;
+    }
+
+    private static int[] u2(int value) {
+        return new int[] {value >> 8, value & 0xFF};
+    }
+
+    private byte[] toClassFile() {
+        int thisClass = pool.classEntry(CLASS);
+        int superClass = pool.classEntry("java/lang/Object");
+        int name = pool.utf8(METHOD);
+        int type = pool.utf8(descriptor);
+        int codeAttribute = pool.utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            pool.write(out);
+            out.writeShort(0x0031); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+            out.writeShort(0x0009); // public static
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + length);
+            out.writeShort(maxStack);
+            out.writeShort(locals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+            out.writeShort(0); // class attributes
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Thrown when the function uses a construct the compiler does not support.
+     */
+    private static final class Unsupported extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        // only a signal to stop compiling, so no stack trace is recorded
+        Unsupported() {
+            super(null, null, false, false);
+        }
+
+    }
+
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, 1, 1, out -> out.writeUTF(value));
+        }
+
+        int classEntry(String name) {
+            int utf8 = utf8(name);
+            return entry("C" + name, 7, 1, out -> out.writeShort(utf8));
+        }
+
+        int longConstant(long value) {
+            return entry("J" + value, 5, 2, out -> out.writeLong(value));
+        }
+
+        int method(String owner, String name, String descriptor) {
+            int ownerEntry = classEntry(owner);
+            int nameEntry = utf8(name);
+            int typeEntry = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, 12, 1, out -> {
+                out.writeShort(nameEntry);
+                out.writeShort(typeEntry);
+            });
+            return entry("M" + owner + "." + name + descriptor, 10, 1, out -> {
+                out.writeShort(ownerEntry);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        /**
+         * Adds an entry unless an equal one exists, returning its index. Long
+         * entries take two indices.
+         */
+        private int entry(String key, int tag, int size, Writer writer) {
+            Integer index = entries.get(key);
+            if (index == null) {
+                index = count;
+                count += size;
+                try {
+                    out.writeByte(tag);
+                    writer.write(out);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                entries.put(key, index);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(count);
+            out.flush();
+            bytes.writeTo(target);
+        }
+
+        private interface Writer {
+
+            void write(DataOutputStream out) throws IOException;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package plc.project;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of function results keyed by argument
+ * values, used by the {@link Interpreter} to memoize pure functions. Tracks
+ * hits, misses and evictions so callers can judge whether caching pays off.
+ */
+public final class MemoCache {
+
+    private final int capacity;
+    private final Map<List<Object>, Environment.PlcObject> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public MemoCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive, received " + capacity + ".");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Environment.PlcObject> eldest) {
+                if (size() > MemoCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the cached result for the given arguments, or null if absent.
+     */
+    public Environment.PlcObject lookup(List<Object> arguments) {
+        Environment.PlcObject result = entries.get(arguments);
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    public void store(List<Object> arguments, Environment.PlcObject result) {
+        entries.put(arguments, result);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoCache{" +
+                "capacity=" + capacity +
+                ", size=" + entries.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+}
@@ -0,0 +1,219 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Optimization pass run on an analyzed AST, between the {@link Analyzer} and
+ * the backends ({@link Interpreter}, {@link Generator}). Each visit returns a
+ * rewritten copy of the node, carrying over the types, variables and functions
+ * set by the analyzer.
+ *
+ * Constant {@link Ast.Expression.Binary} and {@link Ast.Expression.Group}
+ * subtrees are folded bottom-up by evaluating them with the
+ * {@link Interpreter}, so folded values always match the interpreter's
+ * operators. If evaluation fails (for example, division by zero) the subtree
+ * is left as is and the error is still raised when the program runs.
+ *
+ * Immutable ({@code VAL}) globals with a literal initializer are propagated
+ * into every access of that global.
+ */
+public final class Optimizer implements Ast.Visitor<Ast> {
+
+    private final Interpreter evaluator = new Interpreter(new Scope(null));
+    private final Map<Environment.Variable, Ast.Expression.Literal> constants = new IdentityHashMap<>();
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+        List<Ast.Global> globals = new ArrayList<>();
+        for (Ast.Global global : ast.getGlobals())
+            globals.add(visit(global));
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Ast.Function function : ast.getFunctions())
+            functions.add(visit(function));
+        return new Ast.Source(globals, functions);
+    }
+
+    @Override
+    public Ast.Global visit(Ast.Global ast) {
+        Optional<Ast.Expression> value = optimize(ast.getValue());
+        Ast.Global global = new Ast.Global(ast.getName(), ast.getTypeName(), ast.getMutable(), value);
+        global.setVariable(ast.getVariable());
+        if (!ast.getMutable() && value.isPresent() && value.get() instanceof Ast.Expression.Literal)
+            constants.put(ast.getVariable(), (Ast.Expression.Literal) value.get());
+        return global;
+    }
+
+    @Override
+    public Ast.Function visit(Ast.Function ast) {
+        Ast.Function function = new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), optimize(ast.getStatements()));
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    public Ast.Statement.Expression visit(Ast.Statement.Expression ast) {
+        return new Ast.Statement.Expression(optimize(ast.getExpression()));
+    }
+
+    @Override
+    public Ast.Statement.Declaration visit(Ast.Statement.Declaration ast) {
+        Ast.Statement.Declaration declaration = new Ast.Statement.Declaration(ast.getName(), ast.getTypeName(), optimize(ast.getValue()));
+        declaration.setVariable(ast.getVariable());
+        return declaration;
+    }
+
+    @Override
+    public Ast.Statement.Assignment visit(Ast.Statement.Assignment ast) {
+        Ast.Expression receiver = ast.getReceiver();
+        if (receiver instanceof Ast.Expression.Access) {
+            // the receiver is written to, so only its offset may be rewritten
+            Ast.Expression.Access access = (Ast.Expression.Access) receiver;
+            receiver = new Ast.Expression.Access(optimize(access.getOffset()), access.getName());
+            ((Ast.Expression.Access) receiver).setVariable(access.getVariable());
+            ((Ast.Expression.Access) receiver).setInBounds(access.isInBounds());
+        }
+        return new Ast.Statement.Assignment(receiver, optimize(ast.getValue()));
+    }
+
+    @Override
+    public Ast.Statement.If visit(Ast.Statement.If ast) {
+        return new Ast.Statement.If(optimize(ast.getCondition()), optimize(ast.getThenStatements()), optimize(ast.getElseStatements()));
+    }
+
+    @Override
+    public Ast.Statement.Switch visit(Ast.Statement.Switch ast) {
+        List<Ast.Statement.Case> cases = new ArrayList<>();
+        for (Ast.Statement.Case stmt : ast.getCases())
+            cases.add(visit(stmt));
+        return new Ast.Statement.Switch(optimize(ast.getCondition()), cases);
+    }
+
+    @Override
+    public Ast.Statement.Case visit(Ast.Statement.Case ast) {
+        return new Ast.Statement.Case(optimize(ast.getValue()), optimize(ast.getStatements()));
+    }
+
+    @Override
+    public Ast.Statement.While visit(Ast.Statement.While ast) {
+        return new Ast.Statement.While(optimize(ast.getCondition()), optimize(ast.getStatements()));
+    }
+
+    @Override
+    public Ast.Statement.Return visit(Ast.Statement.Return ast) {
+        return new Ast.Statement.Return(optimize(ast.getValue()));
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = optimize(ast.getExpression());
+        if (expression instanceof Ast.Expression.Literal)
+            return expression;
+        Ast.Expression.Group group = new Ast.Expression.Group(expression);
+        group.setType(ast.getType());
+        return group;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Binary ast) {
+        Ast.Expression.Binary binary = new Ast.Expression.Binary(ast.getOperator(), optimize(ast.getLeft()), optimize(ast.getRight()));
+        binary.setType(ast.getType());
+        binary.setRange(ast.getRange());
+        if (isFoldable(binary.getLeft()) && isFoldable(binary.getRight())) {
+            Ast.Expression.Literal folded = fold(binary);
+            if (folded != null)
+                return folded;
+        }
+        return binary;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Access ast) {
+        if (!ast.getOffset().isPresent() && constants.containsKey(ast.getVariable()))
+            return constants.get(ast.getVariable());
+        Ast.Expression.Access access = new Ast.Expression.Access(optimize(ast.getOffset()), ast.getName());
+        access.setVariable(ast.getVariable());
+        access.setInBounds(ast.isInBounds());
+        return access;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Function ast) {
+        List<Ast.Expression> arguments = new ArrayList<>();
+        for (Ast.Expression argument : ast.getArguments())
+            arguments.add(optimize(argument));
+        Ast.Expression.Function function = new Ast.Expression.Function(ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.PlcList ast) {
+        List<Ast.Expression> values = new ArrayList<>();
+        for (Ast.Expression value : ast.getValues())
+            values.add(optimize(value));
+        Ast.Expression.PlcList list = new Ast.Expression.PlcList(values);
+        list.setType(ast.getType());
+        return list;
+    }
+
+    private Ast.Expression optimize(Ast.Expression ast) {
+        return (Ast.Expression) visit(ast);
+    }
+
+    private Optional<Ast.Expression> optimize(Optional<Ast.Expression> ast) {
+        return ast.map(this::optimize);
+    }
+
+    private List<Ast.Statement> optimize(List<Ast.Statement> statements) {
+        List<Ast.Statement> optimized = new ArrayList<>();
+        for (Ast.Statement stmt : statements)
+            optimized.add((Ast.Statement) visit(stmt));
+        return optimized;
+    }
+
+    /**
+     * Decimal arithmetic is never folded, since the interpreter (BigDecimal)
+     * and the generated Java (double) do not round the same way.
+     */
+    private static boolean isFoldable(Ast.Expression ast) {
+        if (!(ast instanceof Ast.Expression.Literal))
+            return false;
+        Object literal = ((Ast.Expression.Literal) ast).getLiteral();
+        return literal instanceof BigInteger || literal instanceof Boolean || literal instanceof Character || literal instanceof String;
+    }
+
+    /**
+     * Evaluates a binary expression with literal operands, returning null if it
+     * cannot be folded.
+     */
+    private Ast.Expression.Literal fold(Ast.Expression.Binary ast) {
+        Object value;
+        try {
+            value = evaluator.visit(ast).getValue();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (value instanceof BigInteger) {
+            // keep results the generated int arithmetic would overflow on
+            BigInteger integer = (BigInteger) value;
+            if (integer.bitLength() > 31)
+                return null;
+        } else if (!(value instanceof Boolean || value instanceof String || value instanceof Character)) {
+            return null;
+        }
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(value);
+        literal.setType(ast.getType());
+        return literal;
+    }
+
+}
@@ -0,0 +1,268 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the call graph of an analyzed {@link Ast.Source}, finds its strongly
+ * connected components (groups of mutually recursive functions) and marks
+ * each function as pure or recursive on its {@link Environment.Function}.
+ *
+ * A function is pure when it does not assign globals or elements of lists it
+ * did not create, does not read mutable globals, and only calls pure
+ * functions defined in the same source. Calls to anything else, including
+ * {@code print}, make the caller impure.
+ */
+public final class PurityAnalyzer implements Ast.Visitor<Void> {
+
+    private final Map<Environment.Function, Ast.Function> functions = new IdentityHashMap<>();
+    private final Map<Ast.Function, Set<Ast.Function>> calls = new IdentityHashMap<>();
+    private final Set<Ast.Function> impure = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Environment.Variable> globals = Collections.newSetFromMap(new IdentityHashMap<>());
+    // locals only ever holding lists created by a LIST literal in the function,
+    // and the variables whose elements the function assigns
+    private final Set<Environment.Variable> unshared = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Environment.Variable> written = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<List<Ast.Function>> components = new ArrayList<>();
+    private Ast.Function function;
+
+    /**
+     * Returns the functions called by each function of the source, limited to
+     * functions defined in the source.
+     */
+    public Map<Ast.Function, Set<Ast.Function>> getCallGraph() {
+        return calls;
+    }
+
+    /**
+     * Returns the strongly connected components of the call graph, with every
+     * component listed after the components it calls.
+     */
+    public List<List<Ast.Function>> getComponents() {
+        return components;
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Global global : ast.getGlobals())
+            visit(global);
+        for (Ast.Function func : ast.getFunctions())
+            functions.put(func.getFunction(), func);
+        for (Ast.Function func : ast.getFunctions())
+            visit(func);
+
+        new Components().connect(ast.getFunctions());
+        for (List<Ast.Function> component : components) {
+            boolean pure = true;
+            boolean recursive = component.size() > 1;
+            for (Ast.Function func : component) {
+                pure &= !impure.contains(func);
+                for (Ast.Function callee : calls.get(func)) {
+                    recursive |= callee == func;
+                    // callees outside the component were resolved earlier
+                    pure &= contains(component, callee) || callee.getFunction().isPure();
+                }
+            }
+            for (Ast.Function func : component) {
+                func.getFunction().setPure(pure);
+                func.getFunction().setRecursive(recursive);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        globals.add(ast.getVariable());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        function = ast;
+        calls.put(ast, Collections.newSetFromMap(new IdentityHashMap<>()));
+        unshared.clear();
+        written.clear();
+        for (Ast.Statement stmt : ast.getStatements())
+            visit(stmt);
+        // checked once every assignment is seen, since a later one (such as in
+        // a loop) may alias the list before the elements are assigned
+        if (!unshared.containsAll(written))
+            impure.add(ast);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        if (ast.getValue().isPresent())
+            visit(ast.getValue().get());
+        if (ast.getValue().isPresent() && ast.getValue().get() instanceof Ast.Expression.PlcList)
+            unshared.add(ast.getVariable());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        if (ast.getReceiver() instanceof Ast.Expression.Access) {
+            Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+            if (globals.contains(receiver.getVariable()))
+                impure.add(function);
+            // list elements are shared with the caller or a global unless the
+            // list was created here
+            if (receiver.getOffset().isPresent()) {
+                written.add(receiver.getVariable());
+                visit(receiver.getOffset().get());
+            } else if (!(ast.getValue() instanceof Ast.Expression.PlcList)) {
+                unshared.remove(receiver.getVariable());
+            }
+        }
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        if (ast.getValue().isPresent())
+            visit(ast.getValue().get());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (globals.contains(ast.getVariable()) && ast.getVariable().getMutable())
+            impure.add(function);
+        if (ast.getOffset().isPresent())
+            visit(ast.getOffset().get());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        Ast.Function callee = functions.get(ast.getFunction());
+        if (callee != null)
+            calls.get(function).add(callee);
+        else
+            impure.add(function);
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    private static boolean contains(List<Ast.Function> component, Ast.Function func) {
+        for (Ast.Function member : component) {
+            if (member == func)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm over the call graph,
+     * which emits components in reverse topological order (callees first).
+     */
+    private final class Components {
+
+        private final Map<Ast.Function, Integer> index = new IdentityHashMap<>();
+        private final Map<Ast.Function, Integer> lowlink = new IdentityHashMap<>();
+        private final List<Ast.Function> stack = new ArrayList<>();
+        private final Set<Ast.Function> onStack = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private void connect(List<Ast.Function> functions) {
+            for (Ast.Function func : functions) {
+                if (!index.containsKey(func))
+                    connect(func);
+            }
+        }
+
+        private void connect(Ast.Function func) {
+            index.put(func, index.size());
+            lowlink.put(func, index.get(func));
+            stack.add(func);
+            onStack.add(func);
+
+            for (Ast.Function callee : calls.get(func)) {
+                if (!index.containsKey(callee)) {
+                    connect(callee);
+                    lowlink.put(func, Math.min(lowlink.get(func), lowlink.get(callee)));
+                } else if (onStack.contains(callee)) {
+                    lowlink.put(func, Math.min(lowlink.get(func), index.get(callee)));
+                }
+            }
+
+            if (lowlink.get(func).equals(index.get(func))) {
+                List<Ast.Function> component = new ArrayList<>();
+                Ast.Function member;
+                do {
+                    member = stack.remove(stack.size() - 1);
+                    onStack.remove(member);
+                    component.add(member);
+                } while (member != func);
+                components.add(component);
+            }
+        }
+
+    }
+
+}
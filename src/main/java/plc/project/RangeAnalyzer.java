@@ -0,0 +1,289 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the range of values every {@code Integer} expression of an analyzed
+ * AST can take and records it on each {@link Ast.Expression.Binary} through
+ * {@link Ast.Expression.Binary#setRange(Range)}. The backends use the ranges
+ * to pick primitive arithmetic where it cannot overflow.
+ *
+ * Integer variables, list elements and function results are assumed to hold
+ * {@code int} values, matching the {@link Generator}'s representation and the
+ * literals accepted by the {@link Analyzer}. Immutable globals with a literal
+ * initializer use that exact value. Since the {@link Interpreter} can hold
+ * larger values, it checks operands against their ranges before relying on
+ * them (see {@link #rangeOf(Ast.Expression)}).
+ */
+public final class RangeAnalyzer implements Ast.Visitor<RangeAnalyzer.Range> {
+
+    private static final BigInteger MAX_EXPONENT = BigInteger.valueOf(64);
+
+    private final Map<Environment.Variable, BigInteger> constants = new IdentityHashMap<>();
+
+    @Override
+    public Range visit(Ast.Source ast) {
+        ast.getGlobals().forEach(this::visit);
+        ast.getFunctions().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Global ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+            if (!ast.getMutable() && ast.getValue().get() instanceof Ast.Expression.Literal && ((Ast.Expression.Literal) ast.getValue().get()).getLiteral() instanceof BigInteger)
+                constants.put(ast.getVariable(), (BigInteger) ((Ast.Expression.Literal) ast.getValue().get()).getLiteral());
+        }
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Function ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.getThenStatements().forEach(this::visit);
+        ast.getElseStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Expression.Literal ast) {
+        if (ast.getLiteral() instanceof BigInteger)
+            return new Range((BigInteger) ast.getLiteral(), (BigInteger) ast.getLiteral());
+        return null;
+    }
+
+    @Override
+    public Range visit(Ast.Expression.Group ast) {
+        return visit(ast.getExpression());
+    }
+
+    @Override
+    public Range visit(Ast.Expression.Binary ast) {
+        Range left = visit(ast.getLeft());
+        Range right = visit(ast.getRight());
+        if (ast.getType() != Environment.Type.INTEGER || left == null || right == null)
+            return null;
+
+        Range range;
+        switch (ast.getOperator()) {
+            case "+":
+                range = new Range(left.getMinimum().add(right.getMinimum()), left.getMaximum().add(right.getMaximum()));
+                break;
+            case "-":
+                range = new Range(left.getMinimum().subtract(right.getMaximum()), left.getMaximum().subtract(right.getMinimum()));
+                break;
+            case "*":
+                range = corners(left, right, BigInteger::multiply);
+                break;
+            case "/":
+                if (right.contains(BigInteger.ZERO)) {
+                    // |left / right| <= |left| for any non-zero divisor
+                    BigInteger bound = left.getMinimum().abs().max(left.getMaximum().abs());
+                    range = new Range(bound.negate(), bound);
+                }
+                else {
+                    range = corners(left, right, BigInteger::divide);
+                }
+                break;
+            case "^":
+                range = power(left, right);
+                break;
+            default:
+                range = null;
+        }
+        ast.setRange(range);
+        return range;
+    }
+
+    @Override
+    public Range visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent())
+            visit(ast.getOffset().get());
+        if (ast.getType() != Environment.Type.INTEGER)
+            return null;
+        if (!ast.getOffset().isPresent() && constants.containsKey(ast.getVariable())) {
+            BigInteger value = constants.get(ast.getVariable());
+            return new Range(value, value);
+        }
+        return Range.INT;
+    }
+
+    @Override
+    public Range visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return ast.getType() == Environment.Type.INTEGER ? Range.INT : null;
+    }
+
+    @Override
+    public Range visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    /**
+     * Returns the range a runtime value of the given Integer expression is
+     * expected to fall in, or null if unknown. A value outside this range
+     * means an assumption of the analysis (int-sized variables) did not hold.
+     */
+    public static Range rangeOf(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Binary)
+            return ((Ast.Expression.Binary) ast).getRange();
+        if (ast instanceof Ast.Expression.Group)
+            return rangeOf(((Ast.Expression.Group) ast).getExpression());
+        if (ast instanceof Ast.Expression.Literal) {
+            Object literal = ((Ast.Expression.Literal) ast).getLiteral();
+            return literal instanceof BigInteger ? new Range((BigInteger) literal, (BigInteger) literal) : null;
+        }
+        return Range.INT;
+    }
+
+    private static Range corners(Range left, Range right, java.util.function.BinaryOperator<BigInteger> operator) {
+        List<BigInteger> values = new ArrayList<>();
+        for (BigInteger x : new BigInteger[] {left.getMinimum(), left.getMaximum()}) {
+            for (BigInteger y : new BigInteger[] {right.getMinimum(), right.getMaximum()}) {
+                values.add(operator.apply(x, y));
+            }
+        }
+        return new Range(Collections.min(values), Collections.max(values));
+    }
+
+    /**
+     * Bounds {@code left ^ right} for non-negative exponents small enough to
+     * compute; a negative exponent yields a value in [-1, 1].
+     */
+    private static Range power(Range left, Range right) {
+        if (right.getMaximum().compareTo(MAX_EXPONENT) > 0)
+            return null;
+        BigInteger base = left.getMinimum().abs().max(left.getMaximum().abs()).max(BigInteger.ONE);
+        BigInteger bound = base.pow(Math.max(right.getMaximum().intValue(), 0));
+        return new Range(bound.negate(), bound);
+    }
+
+    /**
+     * Closed interval of integer values.
+     */
+    public static final class Range {
+
+        public static final Range INT = new Range(BigInteger.valueOf(Integer.MIN_VALUE), BigInteger.valueOf(Integer.MAX_VALUE));
+        public static final Range LONG = new Range(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE));
+
+        private final BigInteger minimum;
+        private final BigInteger maximum;
+
+        public Range(BigInteger minimum, BigInteger maximum) {
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        public BigInteger getMinimum() {
+            return minimum;
+        }
+
+        public BigInteger getMaximum() {
+            return maximum;
+        }
+
+        public boolean contains(BigInteger value) {
+            return minimum.compareTo(value) <= 0 && maximum.compareTo(value) >= 0;
+        }
+
+        /**
+         * Returns true if the value is in this range, which must fit in a long.
+         */
+        public boolean contains(long value) {
+            return fitsLong() && minimum.longValue() <= value && maximum.longValue() >= value;
+        }
+
+        public boolean within(Range range) {
+            return range.minimum.compareTo(minimum) <= 0 && range.maximum.compareTo(maximum) >= 0;
+        }
+
+        public boolean fitsInt() {
+            return within(INT);
+        }
+
+        public boolean fitsLong() {
+            return within(LONG);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Range &&
+                    minimum.equals(((Range) obj).minimum) &&
+                    maximum.equals(((Range) obj).maximum);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * minimum.hashCode() + maximum.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Range{" +
+                    "minimum=" + minimum +
+                    ", maximum=" + maximum +
+                    '}';
+        }
+
+    }
+
+}
@@ -10,7 +10,7 @@ public final class Scope {
 
     private final Scope parent;
     private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private final Map<FunctionKey, Environment.Function> functions = new HashMap<>();
 
     public Scope(Scope parent) {
         this.parent = parent;
@@ -53,23 +53,41 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
+        FunctionKey key = new FunctionKey(name, parameterTypes.size());
+        if (functions.containsKey(key)) {
+            throw new RuntimeException("The function " + key + " is already defined in this scope.");
         } else {
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            functions.put(key, func);
             return func;
         }
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
-        } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        return lookupFunction(new FunctionKey(name, arity));
+    }
+
+    /**
+     * Looks up a function by a key, which callers looking up the same
+     * function repeatedly can build once.
+     */
+    public Environment.Function lookupFunction(FunctionKey key) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Function function = scope.functions.get(key);
+            if (function != null) {
+                return function;
+            }
         }
+        throw new RuntimeException("The function " + key + " is not defined in this scope.");
+    }
+
+    /**
+     * Removes everything defined in this scope, so a block executed
+     * repeatedly can reuse it instead of allocating a new one each time.
+     */
+    public void reset() {
+        variables.clear();
+        functions.clear();
     }
 
     @Override
@@ -81,4 +99,48 @@ public final class Scope {
                 '}';
     }
 
+    /**
+     * The name and arity identifying a function, with the hash computed once
+     * so keys can be reused for repeated lookups.
+     */
+    public static final class FunctionKey {
+
+        private final String name;
+        private final int arity;
+        private final int hash;
+
+        public FunctionKey(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+            this.hash = 31 * name.hashCode() + arity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof FunctionKey &&
+                    hash == ((FunctionKey) obj).hash &&
+                    arity == ((FunctionKey) obj).arity &&
+                    name.equals(((FunctionKey) obj).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name + "/" + arity;
+        }
+
+    }
+
 }
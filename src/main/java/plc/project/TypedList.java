@@ -0,0 +1,152 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A fixed size {@code LIST} value stored in an array of the primitive
+ * representation of its element type: {@code long[]} for Integers,
+ * {@code double[]} for Decimals, {@code char[]} for Characters and
+ * {@code boolean[]} for Booleans. Other types use an {@code Object[]}.
+ *
+ * Elements are converted to the interpreter's values when read, so the list
+ * equals any other list of the same values. Storing a value the array
+ * cannot hold exactly, such as an Integer beyond a long or a Decimal that is
+ * not exactly a double, moves every element to boxed storage.
+ */
+public final class TypedList extends AbstractList<Object> implements RandomAccess {
+
+    private final int size;
+    private long[] longs = null;
+    private double[] doubles = null;
+    private char[] chars = null;
+    private boolean[] booleans = null;
+    private Object[] objects = null;
+
+    public TypedList(Environment.Type type, int size) {
+        this.size = size;
+        if (type == Environment.Type.INTEGER) {
+            longs = new long[size];
+        } else if (type == Environment.Type.DECIMAL) {
+            doubles = new double[size];
+        } else if (type == Environment.Type.CHARACTER) {
+            chars = new char[size];
+        } else if (type == Environment.Type.BOOLEAN) {
+            booleans = new boolean[size];
+        } else {
+            objects = new Object[size];
+        }
+    }
+
+    /**
+     * Creates a list of the values, stored for the given element type or for
+     * the type of the first value if the type is null.
+     */
+    public static TypedList of(Environment.Type type, List<Environment.PlcObject> values) {
+        if (type == null) {
+            type = values.isEmpty() ? Environment.Type.ANY : values.get(0).getType();
+        }
+        TypedList list = new TypedList(type, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            list.setElement(i, values.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the element as an interpreter value, without creating a
+     * BigInteger for Integers held in a {@code long[]}.
+     */
+    public Environment.PlcObject getElement(int index) {
+        if (longs != null) {
+            return Environment.createLong(longs[Objects.checkIndex(index, size)]);
+        }
+        return Environment.create(get(index));
+    }
+
+    public void setElement(int index, Environment.PlcObject value) {
+        if (longs != null && value.isLong()) {
+            longs[Objects.checkIndex(index, size)] = value.getLong();
+        } else {
+            store(Objects.checkIndex(index, size), value.getValue());
+        }
+    }
+
+    /**
+     * Returns the type of the array holding the elements, such as
+     * {@code long.class}, or {@code Object.class} if they are boxed.
+     */
+    public Class<?> getComponentType() {
+        if (longs != null) {
+            return long.class;
+        } else if (doubles != null) {
+            return double.class;
+        } else if (chars != null) {
+            return char.class;
+        } else if (booleans != null) {
+            return boolean.class;
+        }
+        return Object.class;
+    }
+
+    @Override
+    public Object get(int index) {
+        Objects.checkIndex(index, size);
+        if (longs != null) {
+            return BigInteger.valueOf(longs[index]);
+        } else if (doubles != null) {
+            return BigDecimal.valueOf(doubles[index]);
+        } else if (chars != null) {
+            return chars[index];
+        } else if (booleans != null) {
+            return booleans[index];
+        }
+        return objects[index];
+    }
+
+    @Override
+    public Object set(int index, Object value) {
+        Object previous = get(index);
+        store(index, value);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void store(int index, Object value) {
+        if (longs != null && value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+            longs[index] = ((BigInteger) value).longValue();
+        } else if (doubles != null && value instanceof BigDecimal && BigDecimal.valueOf(((BigDecimal) value).doubleValue()).equals(value)) {
+            doubles[index] = ((BigDecimal) value).doubleValue();
+        } else if (chars != null && value instanceof Character) {
+            chars[index] = (Character) value;
+        } else if (booleans != null && value instanceof Boolean) {
+            booleans[index] = (Boolean) value;
+        } else {
+            if (objects == null) {
+                box();
+            }
+            objects[index] = value;
+        }
+    }
+
+    private void box() {
+        Object[] boxed = new Object[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = get(i);
+        }
+        longs = null;
+        doubles = null;
+        chars = null;
+        booleans = null;
+        objects = boxed;
+    }
+
+}
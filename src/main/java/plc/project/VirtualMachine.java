@@ -0,0 +1,339 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Executes {@link Bytecode} with a single dispatch loop over a shared value
+ * stack. Values on the stack are raw Java values ({@link BigInteger},
+ * {@link String}, lists, ...) and are only wrapped in
+ * {@link Environment.PlcObject}s when passed to or from an
+ * {@link Environment.Function}.
+ *
+ * Every compiled function is also defined in the machine's scope, so it can
+ * be invoked like an interpreted function, and calls to functions not
+ * defined in the program (such as {@code print}) go through that scope.
+ */
+public final class VirtualMachine {
+
+    private static final Object NIL = Environment.NIL.getValue();
+
+    private final Scope scope;
+    private Bytecode bytecode;
+    private Object[] constants;
+    private Bytecode.Function[] functions;
+    private Environment.Function[] externals;
+    private Object[] globals;
+    private Object[] stack = new Object[1024];
+    private int top = 0;
+
+    public VirtualMachine(Scope parent) {
+        scope = new Scope(parent);
+        scope.defineFunction("print", 1, args -> {
+            System.out.println(args.get(0).getValue());
+            return Environment.NIL;
+        });
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Compiles and runs the source, returning the result of {@code main}.
+     */
+    public Environment.PlcObject execute(Ast.Source ast) {
+        load(BytecodeCompiler.compile(ast));
+        for (Bytecode.Function function : functions) {
+            if (function.getName().equals("main") && function.getArity() == 0) {
+                return wrap(invoke(function, 0));
+            }
+        }
+        throw new RuntimeException("The function main/0 is not defined in this scope.");
+    }
+
+    /**
+     * Loads the program, initializing its globals and defining its functions
+     * in the machine's scope.
+     */
+    public void load(Bytecode bytecode) {
+        this.bytecode = bytecode;
+        constants = bytecode.getConstants().toArray();
+        functions = bytecode.getFunctions().toArray(new Bytecode.Function[0]);
+        externals = new Environment.Function[constants.length];
+        globals = new Object[bytecode.getGlobals().size()];
+        invoke(bytecode.getInitializer(), 0);
+        for (Bytecode.Function function : functions) {
+            scope.defineFunction(function.getName(), function.getArity(), args -> {
+                // called from outside the machine, possibly while it is running
+                int base = top;
+                ensureCapacity(base + args.size());
+                for (int i = 0; i < args.size(); i++) {
+                    stack[base + i] = args.get(i).getValue();
+                }
+                try {
+                    return wrap(invoke(function, base));
+                } finally {
+                    top = base;
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the current value of a global of the loaded program.
+     */
+    public Environment.PlcObject getGlobal(String name) {
+        int slot = bytecode.getGlobals().indexOf(name);
+        if (slot < 0) {
+            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        }
+        return wrap(globals[slot]);
+    }
+
+    /**
+     * Runs a function whose arguments are on the stack starting at base, which
+     * is also where its locals start, and returns its result.
+     */
+    @SuppressWarnings("unchecked")
+    private Object invoke(Bytecode.Function function, int base) {
+        int[] code = function.getCode();
+        int sp = base + function.getLocals();
+        ensureCapacity(sp + function.getMaxStack());
+        Object[] stack = this.stack;
+        for (int i = base + function.getArity(); i < sp; i++) {
+            stack[i] = NIL;
+        }
+
+        int pc = 0;
+        while (true) {
+            switch (code[pc++]) {
+                case Bytecode.CONST:
+                    stack[sp++] = constants[code[pc++]];
+                    break;
+                case Bytecode.NIL:
+                    stack[sp++] = NIL;
+                    break;
+                case Bytecode.LOAD:
+                    stack[sp++] = stack[base + code[pc++]];
+                    break;
+                case Bytecode.STORE:
+                    stack[base + code[pc++]] = stack[--sp];
+                    break;
+                case Bytecode.GLOAD:
+                    stack[sp++] = globals[code[pc++]];
+                    break;
+                case Bytecode.GSTORE:
+                    globals[code[pc++]] = stack[--sp];
+                    break;
+                case Bytecode.ELEMENT: {
+                    Object index = stack[--sp];
+                    List<Object> list = (List<Object>) stack[--sp];
+                    // checked like the interpreters, so every engine reports the same error
+                    stack[sp++] = list.get(Interpreter.index(Environment.create(index), list.size()));
+                    break;
+                }
+                case Bytecode.SET_ELEMENT: {
+                    Object value = stack[--sp];
+                    Object index = stack[--sp];
+                    List<Object> list = (List<Object>) stack[--sp];
+                    list.set(Interpreter.index(Environment.create(index), list.size()), value);
+                    break;
+                }
+                case Bytecode.LIST: {
+                    int size = code[pc++];
+                    sp -= size;
+                    // stored for the type of the first element, like an unanalyzed list
+                    TypedList list = new TypedList(size == 0 ? Environment.Type.ANY : Environment.create(stack[sp]).getType(), size);
+                    for (int i = 0; i < size; i++) {
+                        list.set(i, stack[sp + i]);
+                    }
+                    stack[sp] = list;
+                    sp++;
+                    break;
+                }
+                case Bytecode.POP:
+                    sp--;
+                    break;
+                case Bytecode.INTEGER_ADD:
+                    sp--;
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).add((BigInteger) stack[sp]);
+                    break;
+                case Bytecode.INTEGER_SUBTRACT:
+                    sp--;
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).subtract((BigInteger) stack[sp]);
+                    break;
+                case Bytecode.INTEGER_MULTIPLY:
+                    sp--;
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).multiply((BigInteger) stack[sp]);
+                    break;
+                case Bytecode.INTEGER_DIVIDE:
+                    sp--;
+                    if (((BigInteger) stack[sp]).signum() == 0) {
+                        throw new RuntimeException("cannot divide by zero");
+                    }
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).divide((BigInteger) stack[sp]);
+                    break;
+                case Bytecode.INTEGER_LESS:
+                    sp--;
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).compareTo((BigInteger) stack[sp]) < 0;
+                    break;
+                case Bytecode.INTEGER_GREATER:
+                    sp--;
+                    stack[sp - 1] = ((BigInteger) stack[sp - 1]).compareTo((BigInteger) stack[sp]) > 0;
+                    break;
+                case Bytecode.ADD:
+                case Bytecode.SUBTRACT:
+                case Bytecode.MULTIPLY:
+                case Bytecode.DIVIDE:
+                case Bytecode.POWER:
+                    sp--;
+                    stack[sp - 1] = arithmetic(code[pc - 1], stack[sp - 1], stack[sp]);
+                    break;
+                case Bytecode.LESS:
+                    sp--;
+                    stack[sp - 1] = compare(stack[sp - 1], stack[sp]) < 0;
+                    break;
+                case Bytecode.GREATER:
+                    sp--;
+                    stack[sp - 1] = compare(stack[sp - 1], stack[sp]) > 0;
+                    break;
+                case Bytecode.EQUAL:
+                    sp--;
+                    stack[sp - 1] = Objects.equals(stack[sp - 1], stack[sp]);
+                    break;
+                case Bytecode.NOT_EQUAL:
+                    sp--;
+                    stack[sp - 1] = !Objects.equals(stack[sp - 1], stack[sp]);
+                    break;
+                case Bytecode.CONCATENATE:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1].toString() + stack[sp];
+                    break;
+                case Bytecode.JUMP:
+                    pc = code[pc];
+                    break;
+                case Bytecode.JUMP_IF_FALSE:
+                    pc = requireType(Boolean.class, stack[--sp]) ? pc + 1 : code[pc];
+                    break;
+                case Bytecode.JUMP_IF_TRUE:
+                    pc = requireType(Boolean.class, stack[--sp]) ? code[pc] : pc + 1;
+                    break;
+                case Bytecode.CALL: {
+                    Bytecode.Function callee = functions[code[pc++]];
+                    sp -= code[pc++];
+                    Object result = invoke(callee, sp);
+                    stack = this.stack;
+                    stack[sp++] = result;
+                    break;
+                }
+                case Bytecode.CALL_EXTERNAL: {
+                    Environment.Function callee = external(code[pc++], code[pc]);
+                    int arity = code[pc++];
+                    sp -= arity;
+                    List<Environment.PlcObject> args = new ArrayList<>(arity);
+                    for (int i = 0; i < arity; i++) {
+                        args.add(wrap(stack[sp + i]));
+                    }
+                    top = sp;
+                    Object result = callee.invoke(args).getValue();
+                    stack = this.stack;
+                    stack[sp++] = result;
+                    break;
+                }
+                case Bytecode.RETURN:
+                    return stack[sp - 1];
+                default:
+                    throw new AssertionError("Unknown opcode " + code[pc - 1] + ".");
+            }
+        }
+    }
+
+    private Environment.Function external(int name, int arity) {
+        Environment.Function function = externals[name];
+        if (function == null || function.getArity() != arity) {
+            function = scope.lookupFunction((String) constants[name], arity);
+            externals[name] = function;
+        }
+        return function;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        }
+    }
+
+    private static Object arithmetic(int opcode, Object left, Object right) {
+        if (opcode == Bytecode.ADD && (left instanceof String || right instanceof String)) {
+            return left.toString() + right;
+        }
+        if (left instanceof BigInteger && right instanceof BigInteger) {
+            BigInteger x = (BigInteger) left;
+            BigInteger y = (BigInteger) right;
+            switch (opcode) {
+                case Bytecode.ADD:
+                    return x.add(y);
+                case Bytecode.SUBTRACT:
+                    return x.subtract(y);
+                case Bytecode.MULTIPLY:
+                    return x.multiply(y);
+                case Bytecode.DIVIDE:
+                    if (y.signum() == 0) {
+                        throw new RuntimeException("cannot divide by zero");
+                    }
+                    return x.divide(y);
+                default:
+                    return IntegerMath.power(x, y);
+            }
+        }
+        if (left instanceof BigDecimal && right instanceof BigDecimal && opcode != Bytecode.POWER) {
+            BigDecimal x = (BigDecimal) left;
+            BigDecimal y = (BigDecimal) right;
+            switch (opcode) {
+                case Bytecode.ADD:
+                    return x.add(y);
+                case Bytecode.SUBTRACT:
+                    return x.subtract(y);
+                case Bytecode.MULTIPLY:
+                    return x.multiply(y);
+                default:
+                    if (y.signum() == 0) {
+                        throw new RuntimeException("cannot divide by zero");
+                    }
+                    return x.divide(y, RoundingMode.HALF_EVEN);
+            }
+        }
+        throw new RuntimeException("types of the sides of the equation do not match");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right) {
+        if (!(left instanceof Comparable) || !(right instanceof Comparable)) {
+            throw new RuntimeException("arguments aren't comparable");
+        }
+        try {
+            return ((Comparable<Object>) left).compareTo(right);
+        } catch (ClassCastException e) {
+            throw new RuntimeException("sides are not the same type");
+        }
+    }
+
+    private static Environment.PlcObject wrap(Object value) {
+        return value == NIL ? Environment.NIL : Environment.create(value);
+    }
+
+    private static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + value.getClass().getName() + ".");
+        }
+    }
+
+}
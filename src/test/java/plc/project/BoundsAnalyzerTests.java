@@ -0,0 +1,76 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class BoundsAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, int expected) {
+        BoundsAnalyzer analyzer = new BoundsAnalyzer();
+        analyzer.visit(analyze(input));
+        Assertions.assertEquals(expected, analyzer.getProven());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Literal Offset",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO RETURN list[2]; END",
+                        1
+                ),
+                Arguments.of("Literal Out Of Bounds",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO RETURN list[3]; END",
+                        0
+                ),
+                Arguments.of("Constant Offset",
+                        "LIST list: Integer = [1, 2, 3]; VAL last: Integer = 2; FUN main(): Integer DO RETURN list[last]; END",
+                        1
+                ),
+                Arguments.of("Loop Counter",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0; WHILE i < 3 DO list[i] = list[i] + 1; i = i + 1; END RETURN 0; END",
+                        2
+                ),
+                Arguments.of("Loop Bound Too Large",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0; WHILE i < 4 DO list[i] = 0; i = i + 1; END RETURN 0; END",
+                        0
+                ),
+                Arguments.of("After Increment",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0; WHILE i < 3 DO i = i + 1; list[i] = 0; END RETURN 0; END",
+                        0
+                ),
+                Arguments.of("Offset From Counter",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 1; WHILE i < 3 DO list[i - 1] = list[i]; i = i + 1; END RETURN 0; END",
+                        2
+                ),
+                Arguments.of("Decreasing Counter",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0; WHILE i < 3 DO list[i] = 0; i = i - 1; END RETURN 0; END",
+                        0
+                ),
+                Arguments.of("Outside Loop",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0; WHILE i < 3 DO i = i + 1; END RETURN list[i]; END",
+                        0
+                )
+        );
+    }
+
+    @Test
+    void testInterpreter() {
+        Ast.Source ast = analyze("LIST list: Integer = [1, 5, 10]; FUN main(): Integer DO LET sum = 0; LET i = 0; WHILE i < 3 DO sum = sum + list[i]; i = i + 1; END RETURN sum; END");
+        new BoundsAnalyzer().visit(ast);
+        Assertions.assertEquals(BigInteger.valueOf(16), new Interpreter(new Scope(null)).visit(ast).getValue());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
@@ -0,0 +1,107 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+final class DeadCodeEliminatorTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testFunction(String test, String input, String expected, int removed) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        DeadCodeEliminator eliminator = new DeadCodeEliminator();
+        Ast.Source optimized = eliminator.visit(new Optimizer().visit(ast));
+
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(optimized.getFunctions().get(0));
+        Assertions.assertEquals(expected, writer.toString());
+        Assertions.assertEquals(removed, eliminator.getRemoved());
+    }
+
+    private static Stream<Arguments> testFunction() {
+        return Stream.of(
+                // FUN main(): Integer DO RETURN 0; print(1); END
+                Arguments.of("After Return",
+                        "FUN main(): Integer DO RETURN 0; print(1); END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    return 0;",
+                                "}"
+                        ),
+                        3
+                ),
+                // FUN main(): Integer DO IF FALSE DO print(1); ELSE print(2); END RETURN 0; END
+                Arguments.of("Constant If",
+                        "FUN main(): Integer DO IF FALSE DO print(1); ELSE print(2); END RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    System.out.println(2);",
+                                "    return 0;",
+                                "}"
+                        ),
+                        5
+                ),
+                // FUN main(): Integer DO IF 1 < 2 DO RETURN 1; ELSE RETURN 2; END RETURN 0; END
+                Arguments.of("Folded If",
+                        "FUN main(): Integer DO IF 1 < 2 DO RETURN 1; ELSE RETURN 2; END RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    return 1;",
+                                "}"
+                        ),
+                        6
+                ),
+                // FUN main(): Integer DO WHILE FALSE DO print(1); END RETURN 0; END
+                Arguments.of("While False",
+                        "FUN main(): Integer DO WHILE FALSE DO print(1); END RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    return 0;",
+                                "}"
+                        ),
+                        5
+                ),
+                // FUN main(): Integer DO SWITCH 'y' CASE 'y': print(1); DEFAULT print(2); END RETURN 0; END
+                Arguments.of("Constant Switch",
+                        "FUN main(): Integer DO SWITCH 'y' CASE 'y': print(1); DEFAULT print(2); END RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    System.out.println(1);",
+                                "    return 0;",
+                                "}"
+                        ),
+                        8
+                ),
+                // FUN main(): Integer DO LET x = 1; LET y = x + 1; RETURN 0; END
+                Arguments.of("Unused Declarations",
+                        "FUN main(): Integer DO LET x = 1; LET y = x + 1; RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    return 0;",
+                                "}"
+                        ),
+                        6
+                ),
+                // FUN main(): Integer DO LET y = 0; LET x = 1 / y; RETURN 0; END
+                Arguments.of("Side Effecting Declaration",
+                        "FUN main(): Integer DO LET y = 0; LET x = 1 / y; RETURN 0; END",
+                        String.join(System.lineSeparator(),
+                                "int main() {",
+                                "    int y = 0;",
+                                "    int x = 1 / y;",
+                                "    return 0;",
+                                "}"
+                        ),
+                        0
+                )
+        );
+    }
+
+}
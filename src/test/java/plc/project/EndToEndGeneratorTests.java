@@ -48,6 +48,90 @@ public class EndToEndGeneratorTests {
                                 "",
                                 "}"
                         )
+                ),
+                Arguments.of("Tail Call",
+                        // FUN sum(n: Integer, total: Integer): Integer DO
+                        //     IF n == 0 DO
+                        //         RETURN total;
+                        //     END
+                        //     RETURN sum(n - 1, total + n);
+                        // END
+                        // FUN main(): Integer DO
+                        //     RETURN sum(3, 0);
+                        // END
+                        "FUN sum(n: Integer, total: Integer): Integer DO\n    IF n == 0 DO\n        RETURN total;\n    END\n    RETURN sum(n - 1, total + n);\nEND\nFUN main(): Integer DO\n    RETURN sum(3, 0);\nEND",
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int sum(int n, int total) {",
+                                "        tail:",
+                                "        while (true) {",
+                                "            if (n == 0) {",
+                                "                return total;",
+                                "            }",
+                                "            {",
+                                "                int n$ = n - 1;",
+                                "                int total$ = total + n;",
+                                "                n = n$;",
+                                "                total = total$;",
+                                "                continue tail;",
+                                "            }",
+                                "        }",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        return sum(3, 0);",
+                                "    }",
+                                "",
+                                "}"
+                        )
+                ),
+                Arguments.of("Tail Call in Switch",
+                        // FUN f(n: Integer): Integer DO
+                        //     SWITCH n
+                        //         CASE 0:
+                        //             RETURN 5;
+                        //         DEFAULT
+                        //             RETURN f(n - 1);
+                        //     END
+                        // END
+                        // FUN main(): Integer DO
+                        //     RETURN f(3);
+                        // END
+                        "FUN f(n: Integer): Integer DO\n    SWITCH n\n        CASE 0:\n            RETURN 5;\n        DEFAULT\n            RETURN f(n - 1);\n    END\nEND\nFUN main(): Integer DO\n    RETURN f(3);\nEND",
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int f(int n) {",
+                                "        tail:",
+                                "        while (true) {",
+                                "            switch (n) {",
+                                "                case 0:",
+                                "                    return 5;",
+                                "                default:",
+                                "                    {",
+                                "                        int n$ = n - 1;",
+                                "                        n = n$;",
+                                "                        continue tail;",
+                                "                    }",
+                                "            }",
+                                "        }",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        return f(3);",
+                                "    }",
+                                "",
+                                "}"
+                        )
                 )
         );
     }
@@ -143,6 +227,61 @@ public class EndToEndGeneratorTests {
                                 "        System.out.println(\"no\");",
                                 "}"
                         )
+                ),
+                Arguments.of("Decimal",
+                        // SWITCH 1.5
+                        //     CASE 1.5:
+                        //         print("yes");
+                        //     DEFAULT
+                        //         print("no");
+                        // END
+                        "SWITCH 1.5\n    CASE 1.5:\n        print(\"yes\");\n    DEFAULT\n        print(\"no\");\nEND",
+                        String.join(System.lineSeparator(),
+                                "if (1.5 == 1.5) {",
+                                "    System.out.println(\"yes\");",
+                                "} else {",
+                                "    System.out.println(\"no\");",
+                                "}"
+                        )
+                ),
+                Arguments.of("Duplicate Case",
+                        // SWITCH 1
+                        //     CASE 1:
+                        //         print("first");
+                        //     CASE 1:
+                        //         print("second");
+                        //     DEFAULT
+                        //         print("no");
+                        // END
+                        "SWITCH 1\n    CASE 1:\n        print(\"first\");\n    CASE 1:\n        print(\"second\");\n    DEFAULT\n        print(\"no\");\nEND",
+                        String.join(System.lineSeparator(),
+                                "if (1 == 1) {",
+                                "    System.out.println(\"first\");",
+                                "} else if (1 == 1) {",
+                                "    System.out.println(\"second\");",
+                                "} else {",
+                                "    System.out.println(\"no\");",
+                                "}"
+                        )
+                ),
+                Arguments.of("Expression Case",
+                        // SWITCH "a" + "b"
+                        //     CASE "a" + "b":
+                        //         print("yes");
+                        //     DEFAULT
+                        //         print("no");
+                        // END
+                        "SWITCH \"a\" + \"b\"\n    CASE \"a\" + \"b\":\n        print(\"yes\");\n    DEFAULT\n        print(\"no\");\nEND",
+                        String.join(System.lineSeparator(),
+                                "{",
+                                "    String switch$0 = \"a\" + \"b\";",
+                                "    if (switch$0.equals(\"a\" + \"b\")) {",
+                                "        System.out.println(\"yes\");",
+                                "    } else {",
+                                "        System.out.println(\"no\");",
+                                "    }",
+                                "}"
+                        )
                 )
         );
     }
@@ -4,13 +4,17 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -20,12 +24,12 @@ final class EndToEndInterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testSource(String test, String input, Object expected) {
-        test(input, expected, new Scope(null), Parser::parseSource);
+    void testSource(String test, Engine engine, String input, Object expected) {
+        test(engine, input, expected, new Scope(null), Parser::parseSource);
     }
 
     private static Stream<Arguments> testSource() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // FUN main() DO RETURN 0; END
                 Arguments.of("Main",
                         "FUN main() DO RETURN 0; END"
@@ -35,19 +39,147 @@ final class EndToEndInterpreterTests {
                 Arguments.of("Globals & No Return",
                         "VAR x: Integer = 1; VAR y: Integer = 10; FUN main() DO x + y; END",
                         Environment.NIL.getValue()
+                ),
+                // FUN main() DO IF TRUE DO RETURN 1; END RETURN 2; END
+                Arguments.of("Return in If",
+                        "FUN main() DO IF TRUE DO RETURN 1; END RETURN 2; END",
+                        BigInteger.ONE
+                ),
+                // FUN main() DO LET i = 0; WHILE TRUE DO i = i + 1; IF i == 5 DO RETURN i; END END END
+                Arguments.of("Return in While",
+                        "FUN main() DO LET i = 0; WHILE TRUE DO i = i + 1; IF i == 5 DO RETURN i; END END END",
+                        BigInteger.valueOf(5)
+                ),
+                // FUN fib(n) DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END FUN main() DO RETURN fib(10); END
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END FUN main() DO RETURN fib(10); END",
+                        BigInteger.valueOf(55)
+                ),
+                // FUN sum(n, total) DO IF n == 0 DO RETURN total; END RETURN sum(n - 1, total + n); END FUN main() DO RETURN sum(100000, 0); END
+                Arguments.of("Tail Call",
+                        "FUN sum(n: Integer, total: Integer): Integer DO IF n == 0 DO RETURN total; END RETURN sum(n - 1, total + n); END FUN main() DO RETURN sum(100000, 0); END",
+                        BigInteger.valueOf(5000050000L)
+                ),
+                // FUN even(n) DO IF n == 0 DO RETURN TRUE; END RETURN odd(n - 1); END FUN odd(n) DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END FUN main() DO RETURN even(100001); END
+                Arguments.of("Mutual Tail Call",
+                        "FUN even(n: Integer): Boolean DO IF n == 0 DO RETURN TRUE; END RETURN odd(n - 1); END FUN odd(n: Integer): Boolean DO IF n == 0 DO RETURN FALSE; END RETURN even(n - 1); END FUN main() DO RETURN even(100001); END",
+                        false
+                ),
+                // FUN main() DO LET i = 0; LET sum = 0; WHILE i < 5 DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END
+                Arguments.of("Declaration in While",
+                        "FUN main() DO LET i = 0; LET sum = 0; WHILE i < 5 DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END",
+                        BigInteger.valueOf(30)
+                ),
+                // FUN main() DO LET x = 1; IF TRUE DO LET x = 2; END RETURN x; END
+                Arguments.of("Shadowing in If",
+                        "FUN main() DO LET x = 1; IF TRUE DO LET x = 2; END RETURN x; END",
+                        BigInteger.ONE
+                ),
+                // FUN f(n) DO SWITCH n CASE 1: RETURN 10; CASE 2: RETURN 20; CASE 3: RETURN 30; DEFAULT RETURN 0; END END FUN main() DO LET low = f(0); LET high = f(100); LET sum = low + high; RETURN sum + f(3); END
+                Arguments.of("Integer Switch",
+                        "FUN f(n: Integer): Integer DO SWITCH n CASE 1: RETURN 10; CASE 2: RETURN 20; CASE 3: RETURN 30; DEFAULT RETURN 0; END END FUN main() DO LET low = f(0); LET high = f(100); LET sum = low + high; RETURN sum + f(3); END",
+                        BigInteger.valueOf(30)
+                ),
+                // FUN main() DO SWITCH "a" + "b" CASE "a": RETURN 1; CASE "ab": RETURN 2; DEFAULT RETURN 0; END END
+                Arguments.of("String Switch",
+                        "FUN main() DO SWITCH \"a\" + \"b\" CASE \"a\": RETURN 1; CASE \"ab\": RETURN 2; DEFAULT RETURN 0; END END",
+                        BigInteger.TWO
+                ),
+                // FUN main() DO LET k = 2; SWITCH 2 CASE 1: RETURN 1; CASE k: RETURN k; DEFAULT RETURN 0; END END
+                Arguments.of("Expression Case",
+                        "FUN main() DO LET k = 2; SWITCH 2 CASE 1: RETURN 1; CASE k: RETURN k; DEFAULT RETURN 0; END END",
+                        BigInteger.TWO
+                ),
+                // FUN main() DO LET k = 2; SWITCH 5 CASE 1: RETURN 1; CASE k: RETURN k; DEFAULT RETURN 9; END END
+                Arguments.of("Expression Case Default",
+                        "FUN main() DO LET k = 2; SWITCH 5 CASE 1: RETURN 1; CASE k: RETURN k; DEFAULT RETURN 9; END END",
+                        BigInteger.valueOf(9)
+                ),
+                // LIST list: Integer = [1, 1 + 1, 3]; FUN main() DO list[0] = list[1] * list[2]; RETURN list[0]; END
+                Arguments.of("List Expressions",
+                        "LIST list: Integer = [1, 1 + 1, 3]; FUN main() DO list[0] = list[1] * list[2]; RETURN list[0]; END",
+                        BigInteger.valueOf(6)
+                ),
+                // LIST list: Integer = [1, 2, 3]; FUN main() DO LET sum = 0; LET i = 0; WHILE i < 3 DO list[i] = list[i] * 2; sum = sum + list[i]; i = i + 1; END RETURN sum; END
+                Arguments.of("List Index",
+                        "LIST list: Integer = [1, 2, 3]; FUN main() DO LET sum = 0; LET i = 0; WHILE i < 3 DO list[i] = list[i] * 2; sum = sum + list[i]; i = i + 1; END RETURN sum; END",
+                        BigInteger.valueOf(12)
+                ),
+                // LIST list: Integer = [1, 2, 3]; FUN main() DO LET i = 3; RETURN list[i]; END
+                Arguments.of("Index Out of Bounds",
+                        "LIST list: Integer = [1, 2, 3]; FUN main() DO LET i = 3; RETURN list[i]; END",
+                        null
+                ),
+                // LIST list: Integer = [1, 2, 3]; FUN main() DO LET i = 0 - 1; list[i] = 0; RETURN 0; END
+                Arguments.of("Negative Index",
+                        "LIST list: Integer = [1, 2, 3]; FUN main() DO LET i = 0 - 1; list[i] = 0; RETURN 0; END",
+                        null
+                ),
+                // VAR x = 1; FUN f() DO RETURN x; END FUN main() DO LET x = 2; RETURN f(); END
+                Arguments.of("Lexical Scope",
+                        "VAR x: Integer = 1; FUN f() DO RETURN x; END FUN main() DO LET x = 2; RETURN f(); END",
+                        BigInteger.ONE
+                ),
+                // FUN main() DO LET s = "a"; LET n = 1; RETURN ((s + n) + 'c') + "d"; END
+                Arguments.of("Concatenation Chain",
+                        "FUN main() DO LET s = \"a\"; LET n = 1; RETURN ((s + n) + 'c') + \"d\"; END",
+                        "a1cd"
+                ),
+                // FUN main() DO RETURN ((1 + 2) + "a") + "b"; END
+                Arguments.of("Integer Concatenation Chain",
+                        "FUN main() DO RETURN ((1 + 2) + \"a\") + \"b\"; END",
+                        "3ab"
+                ),
+                // FUN main() DO LET s = ""; LET i = 0; WHILE i < 200 DO s = s + "ab"; i = i + 1; END LET t = s; s = s + "x"; t = t + "y"; RETURN t; END
+                Arguments.of("Appended String",
+                        "FUN main() DO LET s = \"\"; LET i = 0; WHILE i < 200 DO s = s + \"ab\"; i = i + 1; END LET t = s; s = s + \"x\"; t = t + \"y\"; RETURN t; END",
+                        String.join("", Collections.nCopies(200, "ab")) + "y"
                 )
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testGlobal(String test, String input, Object expected, String variableName) {
-        Scope scope = test(input, Environment.NIL.getValue(), new Scope(null), Parser::parseGlobal);
+    void testAnalyzedSource(String test, Engine engine, String input, Object expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        engine.test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testAnalyzedSource() {
+        return Engine.all(Stream.of(
+                Arguments.of("Integer Loop",
+                        "FUN main(): Integer DO LET sum = 0; LET i = 1; WHILE i < 11 DO sum = sum + i * i; i = i + 1; END RETURN sum; END",
+                        BigInteger.valueOf(385)
+                ),
+                Arguments.of("Decimal Arithmetic",
+                        "FUN main(): Integer DO IF (1.5 + 2.5) / 2.0 == 2.0 DO RETURN 1; END RETURN 0; END",
+                        BigInteger.ONE
+                ),
+                Arguments.of("Concatenation",
+                        "FUN main(): Integer DO IF \"n=\" + 1 == \"n=1\" DO RETURN 1; END RETURN 0; END",
+                        BigInteger.ONE
+                ),
+                Arguments.of("Return From Loop",
+                        "FUN main(): Integer DO LET i = 0; WHILE TRUE DO IF i > 4 DO RETURN i; END i = i + 1; END RETURN 0; END",
+                        BigInteger.valueOf(5)
+                ),
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END FUN main(): Integer DO RETURN fib(15); END",
+                        BigInteger.valueOf(610)
+                )
+        ));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testGlobal(String test, Engine engine, String input, Object expected, String variableName) {
+        Scope scope = test(engine, input, Environment.NIL.getValue(), new Scope(null), Parser::parseGlobal);
         Assertions.assertEquals(expected, scope.lookupVariable(variableName).getValue().getValue());
     }
 
     private static Stream<Arguments> testGlobal() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // VAR name: Integer;
                 Arguments.of("Mutable",
                         "VAR name: Integer;",
@@ -60,30 +192,31 @@ final class EndToEndInterpreterTests {
                         BigInteger.ONE,
                         "name"
                 )
-        );
+        ));
     }
 
-    @Test
-    void testList() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testList(Engine engine) {
         // LIST list: Integer = [1, 5, 10];
         List<Object> expected = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
         String input = new String("LIST list: Integer = [1, 5, 10];");
         String variableName = new String("list");
 
-        Scope scope = test(input, Environment.NIL.getValue(), new Scope(null), Parser::parseGlobal);
+        Scope scope = test(engine, input, Environment.NIL.getValue(), new Scope(null), Parser::parseGlobal);
         Assertions.assertEquals(expected, scope.lookupVariable(variableName).getValue().getValue());
     }
 
     @ParameterizedTest
     @MethodSource
-    void testFunction(String test, String input, List<Environment.PlcObject> args, Object expected, String functionName) {
+    void testFunction(String test, Engine engine, String input, List<Environment.PlcObject> args, Object expected, String functionName) {
 
-        Scope scope = test(input, Environment.NIL.getValue(), new Scope(null), Parser::parseFunction);
+        Scope scope = test(engine, input, Environment.NIL.getValue(), new Scope(null), Parser::parseFunction);
         Assertions.assertEquals(expected, scope.lookupFunction(functionName, args.size()).invoke(args).getValue());
     }
 
     private static Stream<Arguments> testFunction() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // FUN main(): Integer DO RETURN 0; END
                 Arguments.of("Main",
                         "FUN main(): Integer DO RETURN 0; END",
@@ -98,32 +231,58 @@ final class EndToEndInterpreterTests {
                         BigInteger.valueOf(100),
                         "square"
                 )
-        );
+        ));
     }
 
-    @Test
-    void testExpressionStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testExpressionStatement(Engine engine) {
         // print("Hello, World!");
         PrintStream sysout = System.out;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         System.setOut(new PrintStream(out));
         try {
-            test("print(\"Hello, World!\");", Environment.NIL.getValue(), new Scope(null), Parser::parseStatement);
+            test(engine, "print(\"Hello, World!\");", Environment.NIL.getValue(), new Scope(null), Parser::parseStatement);
             Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
         } finally {
             System.setOut(sysout);
         }
     }
 
+    @Test
+    void testOutput() {
+        // FUN main() DO LET i = 0; WHILE i < 3 DO print(i); i = i + 1; END END
+        Ast ast = new Parser(new Lexer("FUN main() DO LET i = 0; WHILE i < 3 DO print(i); i = i + 1; END END").lex()).parseSource();
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        StringWriter out = new StringWriter();
+        interpreter.setOutput(out);
+        interpreter.visit(ast);
+        Assertions.assertEquals(String.join(System.lineSeparator(), "0", "1", "2", ""), out.toString());
+    }
+
+    @Test
+    void testFlushThreshold() {
+        // print("a"); print("b");
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        StringWriter out = new StringWriter();
+        interpreter.setOutput(new BufferedWriter(out));
+        interpreter.setFlushThreshold(2 + 2 * System.lineSeparator().length(), Long.MAX_VALUE / 1000000);
+        Environment.Function print = interpreter.getScope().lookupFunction("print", 1);
+        print.invoke(List.of(Environment.create("a")));
+        Assertions.assertEquals("", out.toString());
+        print.invoke(List.of(Environment.create("b")));
+        Assertions.assertEquals("a" + System.lineSeparator() + "b" + System.lineSeparator(), out.toString());
+    }
+
     @ParameterizedTest
     @MethodSource
-    void testDeclarationStatement(String test, String input, Object expected, String variableName) {
-        Scope scope = test(input, Environment.NIL.getValue(), new Scope(null), Parser::parseStatement);
+    void testDeclarationStatement(String test, Engine engine, String input, Object expected, String variableName) {
+        Scope scope = test(engine, input, Environment.NIL.getValue(), new Scope(null), Parser::parseStatement);
         Assertions.assertEquals(expected, scope.lookupVariable(variableName).getValue().getValue());
     }
 
     private static Stream<Arguments> testDeclarationStatement() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // LET name;
                 Arguments.of("Declaration",
                         "LET name;",
@@ -136,42 +295,44 @@ final class EndToEndInterpreterTests {
                         BigInteger.ONE,
                         "name"
                 )
-        );
+        ));
     }
 
-    @Test
-    void testVariableAssignmentStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testVariableAssignmentStatement(Engine engine) {
         // variable = 1;
         Scope scope = new Scope(null);
         scope.defineVariable("variable", true, Environment.create("variable"));
-        test("variable = 1;", Environment.NIL.getValue(), scope, Parser::parseStatement);
+        test(engine, "variable = 1;", Environment.NIL.getValue(), scope, Parser::parseStatement);
         Assertions.assertEquals(BigInteger.ONE, scope.lookupVariable("variable").getValue().getValue());
     }
 
-    @Test
-    void testListAssignmentStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testListAssignmentStatement(Engine engine) {
         // list[2] = 3;
         List<Object> expected = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.valueOf(3));
         List<Object> list = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
         Scope scope = new Scope(null);
         scope.defineVariable("list", true, Environment.create(list));
-        test("list[2] = 3;", Environment.NIL.getValue(), scope, Parser::parseStatement);
+        test(engine, "list[2] = 3;", Environment.NIL.getValue(), scope, Parser::parseStatement);
 
         Assertions.assertEquals(expected, scope.lookupVariable("list").getValue().getValue());
     }
 
     @ParameterizedTest
     @MethodSource
-    void testIfStatement(String test, String input, Object expected) {
+    void testIfStatement(String test, Engine engine, String input, Object expected) {
         Scope scope = new Scope(null);
         scope.defineVariable("num", true, Environment.NIL);
-        test(input, Environment.NIL.getValue(), scope, Parser::parseStatement);
+        test(engine, input, Environment.NIL.getValue(), scope, Parser::parseStatement);
         Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
     }
 
     private static Stream<Arguments> testIfStatement() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // IF TRUE DO num = 1; END
                 Arguments.of("True Condition",
                         "IF TRUE DO num = 1; END",
@@ -182,11 +343,12 @@ final class EndToEndInterpreterTests {
                         "IF FALSE DO ELSE num = 10; END",
                         BigInteger.TEN
                 )
-        );
+        ));
     }
 
-    @Test
-    void testSwitchStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testSwitchStatement(Engine engine) {
         // SWITCH letter CASE 'y': print("yes"); letter = 'n'; DEFAULT print("no"); END
         Scope scope = new Scope(null);
         scope.defineVariable("letter", true, Environment.create('y'));
@@ -196,7 +358,7 @@ final class EndToEndInterpreterTests {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         System.setOut(new PrintStream(out));
         try {
-            test(input, Environment.NIL.getValue(), scope, Parser::parseStatement);
+            test(engine, input, Environment.NIL.getValue(), scope, Parser::parseStatement);
             Assertions.assertEquals("yes" + System.lineSeparator(), out.toString());
         } finally {
             System.setOut(sysout);
@@ -205,23 +367,100 @@ final class EndToEndInterpreterTests {
         Assertions.assertEquals('n', scope.lookupVariable("letter").getValue().getValue());
     }
 
-    @Test
-    void testWhileStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testWhileStatement(Engine engine) {
         // WHILE num < 10 DO num = num + 1; END
         Scope scope = new Scope(null);
         scope.defineVariable("num", true, Environment.create(BigInteger.ZERO));
-        test("WHILE num < 10 DO num = num + 1; END",Environment.NIL.getValue(), scope, Parser::parseStatement);
+        test(engine, "WHILE num < 10 DO num = num + 1; END",Environment.NIL.getValue(), scope, Parser::parseStatement);
         Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
     }
 
     @ParameterizedTest
     @MethodSource
-    void testLiteralExpression(String test, String input, Object expected) {
-        test(input, expected, new Scope(null), Parser::parseExpression);
+    void testConcatenation(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.visit(ast);
+        Assertions.assertEquals(expected, interpreter.getScope().lookupVariable("s").getValue().getValue());
     }
 
-    private static Stream<Arguments> testLiteralExpression() {
+    private static Stream<Arguments> testConcatenation() {
+        StringBuilder loop = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            loop.append("ab").append(i);
+        }
         return Stream.of(
+                // VAR s: String = "a"; FUN main(): Integer DO LET n = 1; s = ((s + n) + 'c') + "d"; RETURN 0; END
+                Arguments.of("Chain",
+                        "VAR s: String = \"a\"; FUN main(): Integer DO LET n = 1; s = ((s + n) + 'c') + \"d\"; RETURN 0; END",
+                        "a1cd"
+                ),
+                // VAR s: String = ""; FUN main(): Integer DO s = ((1 + 2) + "a") + "b"; RETURN 0; END
+                Arguments.of("Integer Operands",
+                        "VAR s: String = \"\"; FUN main(): Integer DO s = ((1 + 2) + \"a\") + \"b\"; RETURN 0; END",
+                        "3ab"
+                ),
+                // VAR s: String = ""; FUN main(): Integer DO LET i = 0; WHILE i < 200 DO s = (s + "ab") + i; i = i + 1; END RETURN 0; END
+                Arguments.of("Loop",
+                        "VAR s: String = \"\"; FUN main(): Integer DO LET i = 0; WHILE i < 200 DO s = (s + \"ab\") + i; i = i + 1; END RETURN 0; END",
+                        loop.toString()
+                )
+        );
+    }
+
+    @Test
+    void testMemoization() {
+        // FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO RETURN 0; END
+        Ast.Source ast = new Parser(new Lexer("FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        new PurityAnalyzer().visit(ast);
+
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setMemoization(1);
+        interpreter.visit(ast);
+
+        Environment.Function square = interpreter.getScope().lookupFunction("square", 1);
+        for (int x : new int[] {3, 3, 4, 3}) {
+            Assertions.assertEquals(BigInteger.valueOf(x * x), square.invoke(List.of(Environment.create(BigInteger.valueOf(x)))).getValue());
+        }
+        MemoCache cache = interpreter.getCache("square", 1);
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(3, cache.getMisses());
+        Assertions.assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    void testMemoizationListResult() {
+        // LIST list: Integer = [1, 2]; FUN f(x: Integer): Integer DO RETURN list; END FUN main(): Integer DO RETURN 0; END
+        Ast.Source ast = new Parser(new Lexer("LIST list: Integer = [1, 2]; FUN f(x: Integer): Integer DO RETURN list; END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        // a list result is shared by every caller, so it is not cached even if the function is pure
+        ast.getFunctions().get(0).getFunction().setPure(true);
+
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setMemoization(1);
+        interpreter.visit(ast);
+
+        Environment.Function f = interpreter.getScope().lookupFunction("f", 1);
+        List<Environment.PlcObject> args = List.of(Environment.create(BigInteger.ONE));
+        ((TypedList) f.invoke(args).getValue()).set(0, BigInteger.TEN);
+        Assertions.assertEquals(Arrays.asList(BigInteger.TEN, BigInteger.TWO), f.invoke(args).getValue());
+        MemoCache cache = interpreter.getCache("f", 1);
+        Assertions.assertEquals(0, cache.getHits());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLiteralExpression(String test, Engine engine, String input, Object expected) {
+        test(engine, input, expected, new Scope(null), Parser::parseExpression);
+    }
+
+    private static Stream<Arguments> testLiteralExpression() {
+        return Engine.all(Stream.of(
                 // NIL
                 Arguments.of("Nil", "NIL", Environment.NIL.getValue()), //remember, special case
                 // TRUE
@@ -234,17 +473,17 @@ final class EndToEndInterpreterTests {
                 Arguments.of("Character", "'c'", 'c'),
                 // "string"
                 Arguments.of("String", "\"string\"", "string")
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testGroupExpression(String test, String input, Object expected) {
-        test(input, expected, new Scope(null), Parser::parseExpression);
+    void testGroupExpression(String test, Engine engine, String input, Object expected) {
+        test(engine, input, expected, new Scope(null), Parser::parseExpression);
     }
 
     private static Stream<Arguments> testGroupExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // (1)
                 Arguments.of("Literal",
                         "(1)",
@@ -255,17 +494,17 @@ final class EndToEndInterpreterTests {
                         "(1 + 10)",
                         BigInteger.valueOf(11)
                 )
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testBinaryExpression(String test, String input, Object expected) {
-        test(input, expected, new Scope(null), Parser::parseExpression);
+    void testBinaryExpression(String test, Engine engine, String input, Object expected) {
+        test(engine, input, expected, new Scope(null), Parser::parseExpression);
     }
 
     private static Stream<Arguments> testBinaryExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // TRUE && FALSE
                 Arguments.of("And",
                         "TRUE && FALSE",
@@ -301,47 +540,48 @@ final class EndToEndInterpreterTests {
                         "1.2 / 3.4",
                         new BigDecimal("0.4")
                 )
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testAccessExpression(String test, String input, Object expected) {
+    void testAccessExpression(String test, Engine engine, String input, Object expected) {
         Scope scope = new Scope(null);
         scope.defineVariable("variable", true, Environment.create("variable"));
-        test(input, expected, scope, Parser::parseExpression);
+        test(engine, input, expected, scope, Parser::parseExpression);
     }
 
     private static Stream<Arguments> testAccessExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // variable
                 Arguments.of("Variable",
                         "variable",
                         "variable"
                 )
-        );
+        ));
     }
 
-    @Test
-    void testListAccessExpression() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testListAccessExpression(Engine engine) {
         // list[1]
         List<Object> list = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
         Scope scope = new Scope(null);
         scope.defineVariable("list", true, Environment.create(list));
-        test("list[1]", BigInteger.valueOf(5), scope, Parser::parseExpression);
+        test(engine, "list[1]", BigInteger.valueOf(5), scope, Parser::parseExpression);
     }
 
     @ParameterizedTest
     @MethodSource
-    void testFunctionExpression(String test, String input, Object expected) {
+    void testFunctionExpression(String test, Engine engine, String input, Object expected) {
         Scope scope = new Scope(null);
         scope.defineFunction("function", 0, args -> Environment.create("function"));
-        test(input, expected, scope, Parser::parseExpression);
+        test(engine, input, expected, scope, Parser::parseExpression);
     }
 
     private static Stream<Arguments> testFunctionExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // function()
                 Arguments.of("Function",
                         "function()",
@@ -352,22 +592,16 @@ final class EndToEndInterpreterTests {
                         "print(\"Hello, World!\")",
                         Environment.NIL.getValue()
                 )
-        );
+        ));
     }
 
-    private static <T extends Ast> Scope test(String input, Object expected, Scope scope, Function<Parser, T> function) {
+    private static <T extends Ast> Scope test(Engine engine, String input, Object expected, Scope scope, Function<Parser, T> function) {
         Lexer lexer = new Lexer(input);
         Parser parser = new Parser(lexer.lex());
 
         Ast ast = function.apply(parser);
 
-        Interpreter interpreter = new Interpreter(scope);
-        if (expected != null) {
-            Assertions.assertEquals(expected, interpreter.visit(ast).getValue());
-        } else {
-            Assertions.assertThrows(RuntimeException.class, () -> interpreter.visit(ast));
-        }
-        return interpreter.getScope();
+        return engine.test(ast, expected, scope);
     }
 
 
@@ -0,0 +1,79 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.provider.Arguments;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The engines that execute an AST, so test cases written once run against
+ * the {@link Interpreter} and the {@link ClosureInterpreter}, with and
+ * without type feedback.
+ */
+enum Engine {
+
+    INTERPRETER,
+    CLOSURE,
+    SPECIALIZING;
+
+    /**
+     * Executes the AST in a scope nested in the given one and asserts the
+     * result, or that it throws if expected is null. Returns the scope the
+     * AST defined its variables and functions in.
+     */
+    Scope test(Ast ast, Object expected, Scope scope) {
+        if (this == INTERPRETER) {
+            Interpreter interpreter = new Interpreter(scope);
+            if (expected != null) {
+                Assertions.assertEquals(expected, interpreter.visit(ast).getValue());
+            } else {
+                Assertions.assertThrows(RuntimeException.class, () -> interpreter.visit(ast));
+            }
+            // only sources and function calls flush what they print
+            interpreter.flush();
+            return interpreter.getScope();
+        }
+        ClosureInterpreter interpreter = closureInterpreter(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, interpreter.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> interpreter.execute(ast));
+        }
+        return interpreter.getScope();
+    }
+
+    /**
+     * Executes the AST in a scope nested in the given one.
+     */
+    Environment.PlcObject execute(Ast ast, Scope scope) {
+        if (this == INTERPRETER) {
+            return new Interpreter(scope).visit(ast);
+        }
+        return closureInterpreter(scope).execute(ast);
+    }
+
+    private ClosureInterpreter closureInterpreter(Scope scope) {
+        ClosureInterpreter interpreter = new ClosureInterpreter(scope);
+        interpreter.setTypeFeedback(this == SPECIALIZING);
+        return interpreter;
+    }
+
+    /**
+     * Returns the test cases once for each engine, with the engine inserted
+     * after the name of the test.
+     */
+    static Stream<Arguments> all(Stream<Arguments> arguments) {
+        List<Object[]> cases = arguments.map(Arguments::get).collect(Collectors.toList());
+        return Arrays.stream(values()).flatMap(engine -> cases.stream().map(values -> {
+            Object[] withEngine = new Object[values.length + 1];
+            withEngine[0] = values[0];
+            withEngine[1] = engine;
+            System.arraycopy(values, 1, withEngine, 2, values.length - 1);
+            return Arguments.of(withEngine);
+        }));
+    }
+
+}
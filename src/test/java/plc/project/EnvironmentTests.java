@@ -0,0 +1,128 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
+final class EnvironmentTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testCreate(String test, Object value, Environment.Type type) {
+        Environment.PlcObject object = Environment.create(value);
+        Assertions.assertEquals(value, object.getValue());
+        Assertions.assertSame(type, object.getType());
+    }
+
+    private static Stream<Arguments> testCreate() {
+        return Stream.of(
+                Arguments.of("Integer", BigInteger.valueOf(100000), Environment.Type.INTEGER),
+                Arguments.of("Small Integer", BigInteger.TEN, Environment.Type.INTEGER),
+                Arguments.of("Decimal", new BigDecimal("1.5"), Environment.Type.DECIMAL),
+                Arguments.of("Boolean", true, Environment.Type.BOOLEAN),
+                Arguments.of("Character", 'c', Environment.Type.CHARACTER),
+                Arguments.of("String", "string", Environment.Type.STRING),
+                Arguments.of("List", new ArrayList<>(), Environment.Type.ANY)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testShared(String test, Object value, boolean shared) {
+        Assertions.assertEquals(shared, Environment.create(value) == Environment.create(value));
+    }
+
+    private static Stream<Arguments> testShared() {
+        return Stream.of(
+                Arguments.of("True", true, true),
+                Arguments.of("False", false, true),
+                Arguments.of("Zero", BigInteger.ZERO, true),
+                Arguments.of("Negative", BigInteger.valueOf(-128), true),
+                Arguments.of("Small Maximum", BigInteger.valueOf(1024), true),
+                Arguments.of("Large", BigInteger.valueOf(1025), false),
+                Arguments.of("Huge", BigInteger.TEN.pow(40), false),
+                Arguments.of("String", "string", false)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testCreateLong(String test, long value) {
+        Environment.PlcObject object = Environment.createLong(value);
+        Assertions.assertTrue(object.isLong());
+        Assertions.assertEquals(value, object.getLong());
+        Assertions.assertEquals(BigInteger.valueOf(value), object.getValue());
+        Assertions.assertSame(Environment.Type.INTEGER, object.getType());
+    }
+
+    private static Stream<Arguments> testCreateLong() {
+        return Stream.of(
+                Arguments.of("Small", 1L),
+                Arguments.of("Large", 1L << 40),
+                Arguments.of("Minimum", Long.MIN_VALUE)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testIsLong(String test, BigInteger value, boolean expected) {
+        Assertions.assertEquals(expected, Environment.create(value).isLong());
+    }
+
+    private static Stream<Arguments> testIsLong() {
+        return Stream.of(
+                Arguments.of("Small", BigInteger.ONE, true),
+                Arguments.of("Maximum", BigInteger.valueOf(Long.MAX_VALUE), true),
+                Arguments.of("Overflow", BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), false)
+        );
+    }
+
+    @Test
+    void testCharacter() {
+        // not widened to an Integer
+        Assertions.assertEquals('c', Environment.create('c').getValue());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testConcatenate(String test, Object left, String[] right, String expected) {
+        Environment.PlcObject object = Environment.concatenate(Environment.create(left), right);
+        Assertions.assertEquals(expected, object.getValue());
+        Assertions.assertSame(Environment.Type.STRING, object.getType());
+    }
+
+    private static Stream<Arguments> testConcatenate() {
+        return Stream.of(
+                Arguments.of("String", "a", new String[] {"b", "c"}, "abc"),
+                Arguments.of("Integer", BigInteger.ONE, new String[] {"a"}, "1a"),
+                Arguments.of("Character", 'c', new String[] {"a"}, "ca"),
+                Arguments.of("Long", "a", new String[] {"b".repeat(300)}, "a" + "b".repeat(300))
+        );
+    }
+
+    @Test
+    void testConcatenateShared() {
+        Environment.PlcObject base = Environment.concatenate(Environment.create("a"), "b".repeat(300));
+        Environment.PlcObject first = Environment.concatenate(base, "c");
+        // base no longer ends its buffer, so this copies instead of appending
+        Environment.PlcObject second = Environment.concatenate(base, "d");
+        Environment.PlcObject third = Environment.concatenate(first, "e");
+        Assertions.assertEquals("a" + "b".repeat(300), base.getValue());
+        Assertions.assertEquals("a" + "b".repeat(300) + "c", first.getValue());
+        Assertions.assertEquals("a" + "b".repeat(300) + "d", second.getValue());
+        Assertions.assertEquals("a" + "b".repeat(300) + "ce", third.getValue());
+    }
+
+    @Test
+    void testNil() {
+        Assertions.assertSame(Environment.NIL, Environment.create(Environment.NIL.getValue()));
+    }
+
+}
@@ -253,7 +253,7 @@ public class GeneratorTests {
                                 init(new Ast.Expression.Literal(BigInteger.TWO), ast -> ast.setType(Environment.Type.INTEGER)),
                                 init(new Ast.Expression.Literal(BigInteger.valueOf(3)), ast -> ast.setType(Environment.Type.INTEGER))
                         ), ast -> ast.setType(Environment.Type.INTEGER)),
-                        "Math.pow(2, 3)"
+                        "pow$(2, 3)"
                 )
         );
     }
@@ -0,0 +1,56 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class IntegerMathTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testPower(String test, long base, long exponent, BigInteger expected) {
+        Assertions.assertEquals(expected, IntegerMath.power(BigInteger.valueOf(base), BigInteger.valueOf(exponent)));
+        if (expected.bitLength() < 64) {
+            Assertions.assertEquals(expected.longValue(), IntegerMath.power(base, exponent));
+        } else {
+            Assertions.assertThrows(ArithmeticException.class, () -> IntegerMath.power(base, exponent));
+        }
+    }
+
+    private static Stream<Arguments> testPower() {
+        return Stream.of(
+                Arguments.of("Square", 7, 2, BigInteger.valueOf(49)),
+                Arguments.of("Odd Exponent", 3, 5, BigInteger.valueOf(243)),
+                Arguments.of("Zero Exponent", 5, 0, BigInteger.ONE),
+                Arguments.of("Zero Base", 0, 5, BigInteger.ZERO),
+                Arguments.of("Zero to Zero", 0, 0, BigInteger.ONE),
+                Arguments.of("Negative Base", -2, 3, BigInteger.valueOf(-8)),
+                Arguments.of("Minus One Even", -1, 1000000000000L, BigInteger.ONE),
+                Arguments.of("Minus One Odd", -1, 1000000000001L, BigInteger.ONE.negate()),
+                Arguments.of("Negative Exponent", 2, -3, BigInteger.ZERO),
+                Arguments.of("Negative Exponent of One", -1, -3, BigInteger.ONE.negate()),
+                Arguments.of("Long Maximum", 2, 62, BigInteger.TWO.pow(62)),
+                Arguments.of("Long Minimum", -2, 63, BigInteger.TWO.pow(63).negate()),
+                Arguments.of("Overflow", 2, 63, BigInteger.TWO.pow(63)),
+                Arguments.of("Large", 3, 1000, BigInteger.valueOf(3).pow(1000))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testError(String test, long base, long exponent) {
+        Assertions.assertThrows(RuntimeException.class, () -> IntegerMath.power(BigInteger.valueOf(base), BigInteger.valueOf(exponent)));
+    }
+
+    private static Stream<Arguments> testError() {
+        return Stream.of(
+                Arguments.of("Zero Base Negative Exponent", 0, -1),
+                Arguments.of("Exponent Too Large", 2, 1L << 40)
+        );
+    }
+
+}
@@ -0,0 +1,245 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compares the performance of execution strategies. These are excluded from
+ * {@code gradle test}; run them with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+final class InterpreterBenchmarks {
+
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    void benchmarkJit() {
+        String input = "FUN sumSquares(n: Integer): Integer DO LET sum = 0; LET i = 0; WHILE i < n DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END FUN main(): Integer DO RETURN 0; END";
+        Object interpreted = run("interpreted", input, interpreter -> {});
+        Object compiled = run("compiled", input, interpreter -> interpreter.setCompileThreshold(1));
+        Assertions.assertEquals(interpreted, compiled);
+    }
+
+    @Test
+    void benchmarkTypeFeedback() {
+        // unanalyzed, so operand types are only known at runtime
+        Ast.Source ast = new Parser(new Lexer("FUN sumSquares(n: Integer): Integer DO LET sum = 0; LET i = 0; WHILE i < n DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        Object generic = run("generic nodes", ast, false);
+        Object specialized = run("specializing nodes", ast, true);
+        Assertions.assertEquals(generic, specialized);
+    }
+
+    @Test
+    void benchmarkDeepArithmetic() {
+        // a complete tree of additions with 2^16 operands
+        Ast.Expression ast = deep(16);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        Object result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            result = interpreter.visit(ast).getValue();
+        }
+        System.out.printf("deep arithmetic: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(1 << 16), result);
+    }
+
+    @Test
+    void benchmarkRecursion() {
+        Ast.Source ast = new Parser(new Lexer("FUN sum(n: Integer): Integer DO LET result = 0; IF n > 0 DO LET rest = sum(n - 1); result = n + rest; END RETURN result; END FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.visit(ast);
+        Environment.Function function = interpreter.getScope().lookupFunction("sum", 1);
+        List<Environment.PlcObject> args = List.of(Environment.create(BigInteger.valueOf(200)));
+        Object result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = function.invoke(args).getValue();
+        }
+        System.out.printf("recursion: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(20100), result);
+    }
+
+    @Test
+    void benchmarkCounterLoop() {
+        Ast.Source ast = new Parser(new Lexer("FUN main(): Integer DO LET i = 0; LET total = 0; WHILE i < 1000000 DO total = total + 3; i = i + 1; END RETURN total; END").lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        long start = System.nanoTime();
+        Object result = new Interpreter(new Scope(null)).visit(ast).getValue();
+        System.out.printf("counter loop: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(3000000), result);
+    }
+
+    @Test
+    void benchmarkLoopAllocation() {
+        // 10M iterations, with and without a declaration in the body
+        allocation("loop allocation", "FUN main(): Integer DO LET i = 0; WHILE i < 10000000 DO i = i + 1; END RETURN i; END", 10000000);
+        allocation("loop allocation with declaration", "FUN main(): Integer DO LET i = 0; WHILE i < 10000000 DO LET next = i + 1; i = next; END RETURN i; END", 10000000);
+    }
+
+    @Test
+    void benchmarkCalls() {
+        allocation("calls", "FUN next(i: Integer): Integer DO RETURN i + 1; END FUN main(): Integer DO LET i = 0; WHILE i < 1000000 DO i = next(i); END RETURN i; END", 1000000);
+    }
+
+    @Test
+    void benchmarkSwitch() {
+        // a state machine with 500 literal cases, each selected in turn
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            cases.append("CASE ").append(i).append(": RETURN ").append(i).append("; ");
+        }
+        Ast.Source ast = new Parser(new Lexer("FUN state(n: Integer): Integer DO SWITCH n " + cases + "DEFAULT RETURN 0; END END "
+                + "FUN run(n: Integer): Integer DO LET sum = 0; LET i = 0; WHILE i < n DO LET next = state(i); sum = sum + next; i = i + 1; END RETURN sum; END "
+                + "FUN main(): Integer DO RETURN 0; END").lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.visit(ast);
+        Environment.Function function = interpreter.getScope().lookupFunction("run", 1);
+        List<Environment.PlcObject> args = List.of(Environment.create(BigInteger.valueOf(500)));
+        Object result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = function.invoke(args).getValue();
+        }
+        System.out.printf("switch: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(124750), result);
+    }
+
+    @Test
+    void benchmarkListMemory() {
+        // 1M Integers too large for the small value cache
+        List<Environment.PlcObject> values = new ArrayList<>();
+        for (int i = 0; i < 1000000; i++) {
+            values.add(Environment.createLong(i + 1000000L));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        List<Object> boxed = new ArrayList<>(values.size());
+        for (Environment.PlcObject value : values) {
+            boxed.add(value.getValue());
+        }
+        long boxedBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        bytes = threads.getCurrentThreadAllocatedBytes();
+        TypedList typed = TypedList.of(Environment.Type.INTEGER, values);
+        long typedBytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        System.out.printf("list memory: %.1f bytes/element boxed, %.1f bytes/element typed%n", boxedBytes / 1e6, typedBytes / 1e6);
+        Assertions.assertEquals(boxed, typed);
+    }
+
+    @Test
+    void benchmarkListSum() {
+        List<Environment.PlcObject> values = new ArrayList<>();
+        for (int i = 0; i < 1000000; i++) {
+            values.add(Environment.createLong(i));
+        }
+        Ast.Source ast = new Parser(new Lexer("FUN main(): Integer DO LET sum = 0; LET i = 0; WHILE i < 1000000 DO sum = sum + list[i]; i = i + 1; END RETURN sum; END").lex()).parseSource();
+        Scope analysis = new Scope(null);
+        analysis.defineVariable("list", "list", Environment.Type.INTEGER, true, Environment.NIL);
+        new Analyzer(analysis).visit(ast);
+
+        // a 1M element LIST, defined directly since the parser would need a literal of every element
+        Scope scope = new Scope(null);
+        scope.defineVariable("list", true, Environment.create(TypedList.of(Environment.Type.INTEGER, values)));
+        long start = System.nanoTime();
+        Object result = new Interpreter(scope).visit(ast).getValue();
+        System.out.printf("list sum: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(499999500000L), result);
+    }
+
+    @Test
+    void benchmarkPrint() {
+        // 1M lines to a discarding System.out, flushed per line (as println did) and buffered
+        String input = "FUN main(): Integer DO LET i = 0; WHILE i < 1000000 DO print(i); i = i + 1; END RETURN i; END";
+        PrintStream sysout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), true));
+        try {
+            print("print per line", input, interpreter -> interpreter.setFlushThreshold(0, 0));
+            print("print buffered", input, interpreter -> {});
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @Test
+    void benchmarkConcatenation() {
+        // 100k appends of a chain to a string growing to about 1M characters
+        String input = "VAR s: String = \"\"; FUN main(): Integer DO LET i = 0; WHILE i < 100000 DO s = ((s + \"ab\") + i) + \";\"; i = i + 1; END RETURN 0; END";
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        long start = System.nanoTime();
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.visit(ast);
+        System.out.printf("concatenation: %.2f ms%n", (System.nanoTime() - start) / 1e6);
+        Assertions.assertEquals(788890, ((String) interpreter.getScope().lookupVariable("s").getValue().getValue()).length());
+    }
+
+    private static void print(String name, String input, Consumer<Interpreter> configuration) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        configuration.accept(interpreter);
+        long start = System.nanoTime();
+        interpreter.visit(ast);
+        // System.out is redirected, so report on the original stream
+        System.err.printf("%s: %.2f ms%n", name, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static void allocation(String name, String input, int iterations) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        Object result = new Interpreter(new Scope(null)).visit(ast).getValue();
+        long time = System.nanoTime() - start;
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        System.out.printf("%s: %.2f ms, %.1f bytes/iteration, %.0f MB/s%n", name, time / 1e6, (double) bytes / iterations, bytes / (time / 1e9) / 1e6);
+        Assertions.assertEquals(BigInteger.valueOf(iterations), result);
+    }
+
+    private static Ast.Expression deep(int depth) {
+        if (depth == 0) {
+            return new Ast.Expression.Literal(BigInteger.ONE);
+        }
+        return new Ast.Expression.Binary("+", deep(depth - 1), deep(depth - 1));
+    }
+
+    private static Object run(String name, Ast.Source ast, boolean typeFeedback) {
+        ClosureInterpreter interpreter = new ClosureInterpreter(new Scope(null));
+        interpreter.setTypeFeedback(typeFeedback);
+        interpreter.execute(ast);
+        return time(name, interpreter.getScope().lookupFunction("sumSquares", 1));
+    }
+
+    private static Object run(String name, String input, Consumer<Interpreter> configuration) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        configuration.accept(interpreter);
+        interpreter.visit(ast);
+        return time(name, interpreter.getScope().lookupFunction("sumSquares", 1));
+    }
+
+    private static Object time(String name, Environment.Function function) {
+        List<Environment.PlcObject> args = List.of(Environment.create(BigInteger.valueOf(1000)));
+
+        Object result = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = function.invoke(args).getValue();
+        }
+        System.out.printf("%s: %.2f ms%n", name, (System.nanoTime() - start) / 1e6);
+        return result;
+    }
+
+}
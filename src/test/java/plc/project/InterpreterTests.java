@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.ByteArrayOutputStream;
@@ -19,12 +20,12 @@ final class InterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testSource(String test, Ast.Source ast, Object expected) {
-        test(ast, expected, new Scope(null));
+    void testSource(String test, Engine engine, Ast.Source ast, Object expected) {
+        engine.test(ast, expected, new Scope(null));
     }
 
     private static Stream<Arguments> testSource() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // FUN main() DO RETURN 0; END
                 Arguments.of("Main", new Ast.Source(
                         Arrays.asList(),
@@ -62,12 +63,12 @@ final class InterpreterTests {
                                         new Ast.Statement.Return(new Ast.Expression.Function("f", Arrays.asList(new Ast.Expression.Literal(BigInteger.valueOf(5))))))
                                 ))
                 ), BigInteger.valueOf(8))
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testScope(String test, Ast.Source ast, Object expected) {
+    void testScope(String test, Engine engine, Ast.Source ast, Object expected) {
         Scope scope = new Scope(null);
         StringBuilder builder = new StringBuilder();
         scope.defineFunction("log", 1, args -> {
@@ -75,11 +76,11 @@ final class InterpreterTests {
             builder.append(args.get(0).getValue());
             return args.get(0);
         });
-        test(ast, expected, scope);
+        engine.test(ast, expected, scope);
     }
 
     private static Stream<Arguments> testScope() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // FUN main() DO
                 //    LET x = 1;
                 //    LET y = 2;
@@ -116,27 +117,28 @@ final class InterpreterTests {
                                 new Ast.Statement.Expression(new Ast.Expression.Function("log", Arrays.asList(new Ast.Expression.Access(Optional.empty(), "y"))))
                         )))
                 ), Environment.NIL.getValue())
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testGlobal(String test, Ast.Global ast, Object expected) {
-        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+    void testGlobal(String test, Engine engine, Ast.Global ast, Object expected) {
+        Scope scope = engine.test(ast, Environment.NIL.getValue(), new Scope(null));
         Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
     }
 
     private static Stream<Arguments> testGlobal() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // VAR name;
                 Arguments.of("Mutable", new Ast.Global("name", true, Optional.empty()), Environment.NIL.getValue()),
                 // VAL name = 1;
                 Arguments.of("Immutable", new Ast.Global("name", false, Optional.of(new Ast.Expression.Literal(BigInteger.ONE))), BigInteger.ONE)
-        );
+        ));
     }
 
-    @Test
-    void testList() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testList(Engine engine) {
         // LIST list = [1, 5, 10];
         List<Object> expected = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
@@ -147,19 +149,19 @@ final class InterpreterTests {
         Optional<Ast.Expression> value = Optional.of(new Ast.Expression.PlcList(values));
         Ast.Global ast = new Ast.Global("list", true, value);
 
-        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Scope scope = engine.test(ast, Environment.NIL.getValue(), new Scope(null));
         Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
     }
 
     @ParameterizedTest
     @MethodSource
-    void testFunction(String test, Ast.Function ast, List<Environment.PlcObject> args, Object expected) {
-        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+    void testFunction(String test, Engine engine, Ast.Function ast, List<Environment.PlcObject> args, Object expected) {
+        Scope scope = engine.test(ast, Environment.NIL.getValue(), new Scope(null));
         Assertions.assertEquals(expected, scope.lookupFunction(ast.getName(), args.size()).invoke(args).getValue());
     }
 
     private static Stream<Arguments> testFunction() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // FUN main() DO RETURN 0; END
                 Arguments.of("Main",
                         new Ast.Function("main", Arrays.asList(), Arrays.asList(
@@ -179,17 +181,18 @@ final class InterpreterTests {
                         Arrays.asList(Environment.create(BigInteger.TEN)),
                         BigInteger.valueOf(100)
                 )
-        );
+        ));
     }
 
-    @Test
-    void testExpressionStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testExpressionStatement(Engine engine) {
         // print("Hello, World!");
         PrintStream sysout = System.out;
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         System.setOut(new PrintStream(out));
         try {
-            test(new Ast.Statement.Expression(
+            engine.test(new Ast.Statement.Expression(
                     new Ast.Expression.Function("print", Arrays.asList(new Ast.Expression.Literal("Hello, World!")))
             ), Environment.NIL.getValue(), new Scope(null));
             Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
@@ -200,13 +203,13 @@ final class InterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testDeclarationStatement(String test, Ast.Statement.Declaration ast, Object expected) {
-        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+    void testDeclarationStatement(String test, Engine engine, Ast.Statement.Declaration ast, Object expected) {
+        Scope scope = engine.test(ast, Environment.NIL.getValue(), new Scope(null));
         Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
     }
 
     private static Stream<Arguments> testDeclarationStatement() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // LET name;
                 Arguments.of("Declaration",
                         new Ast.Statement.Declaration("name", Optional.empty()),
@@ -217,30 +220,32 @@ final class InterpreterTests {
                         new Ast.Statement.Declaration("name", Optional.of(new Ast.Expression.Literal(BigInteger.ONE))),
                         BigInteger.ONE
                 )
-        );
+        ));
     }
 
-    @Test
-    void testVariableAssignmentStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testVariableAssignmentStatement(Engine engine) {
         // variable = 1;
         Scope scope = new Scope(null);
         scope.defineVariable("variable", true, Environment.create("variable"));
-        test(new Ast.Statement.Assignment(
+        engine.test(new Ast.Statement.Assignment(
                 new Ast.Expression.Access(Optional.empty(),"variable"),
                 new Ast.Expression.Literal(BigInteger.ONE)
         ), Environment.NIL.getValue(), scope);
         Assertions.assertEquals(BigInteger.ONE, scope.lookupVariable("variable").getValue().getValue());
     }
 
-    @Test
-    void testListAssignmentStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testListAssignmentStatement(Engine engine) {
         // list[2] = 3;
         List<Object> expected = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.valueOf(3));
         List<Object> list = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
         Scope scope = new Scope(null);
         scope.defineVariable("list", true, Environment.create(list));
-        test(new Ast.Statement.Assignment(
+        engine.test(new Ast.Statement.Assignment(
                 new Ast.Expression.Access(Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(2))), "list"),
                 new Ast.Expression.Literal(BigInteger.valueOf(3))
         ), Environment.NIL.getValue(), scope);
@@ -250,15 +255,15 @@ final class InterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testIfStatement(String test, Ast.Statement.If ast, Object expected) {
+    void testIfStatement(String test, Engine engine, Ast.Statement.If ast, Object expected) {
         Scope scope = new Scope(null);
         scope.defineVariable("num", true, Environment.NIL);
-        test(ast, Environment.NIL.getValue(), scope);
+        engine.test(ast, Environment.NIL.getValue(), scope);
         Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
     }
 
     private static Stream<Arguments> testIfStatement() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // IF TRUE DO num = 1; END
                 Arguments.of("True Condition",
                         new Ast.Statement.If(
@@ -277,11 +282,12 @@ final class InterpreterTests {
                         ),
                         BigInteger.TEN
                 )
-        );
+        ));
     }
 
-    @Test
-    void testSwitchStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testSwitchStatement(Engine engine) {
         // SWITCH letter CASE 'y': print("yes"); letter = 'n'; DEFAULT: print("no"); END
         Scope scope = new Scope(null);
         scope.defineVariable("letter", true, Environment.create('y'));
@@ -303,7 +309,7 @@ final class InterpreterTests {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         System.setOut(new PrintStream(out));
         try {
-            test(ast, Environment.NIL.getValue(), scope);
+            engine.test(ast, Environment.NIL.getValue(), scope);
             Assertions.assertEquals("yes" + System.lineSeparator(), out.toString());
         } finally {
             System.setOut(sysout);
@@ -312,12 +318,13 @@ final class InterpreterTests {
         Assertions.assertEquals('n', scope.lookupVariable("letter").getValue().getValue());
     }
 
-    @Test
-    void testWhileStatement() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testWhileStatement(Engine engine) {
         // WHILE num < 10 DO num = num + 1; END
         Scope scope = new Scope(null);
         scope.defineVariable("num", true, Environment.create(BigInteger.ZERO));
-        test(new Ast.Statement.While(
+        engine.test(new Ast.Statement.While(
                 new Ast.Expression.Binary("<",
                         new Ast.Expression.Access(Optional.empty(),"num"),
                         new Ast.Expression.Literal(BigInteger.TEN)
@@ -335,12 +342,12 @@ final class InterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testLiteralExpression(String test, Ast ast, Object expected) {
-        test(ast, expected, new Scope(null));
+    void testLiteralExpression(String test, Engine engine, Ast ast, Object expected) {
+        engine.test(ast, expected, new Scope(null));
     }
 
     private static Stream<Arguments> testLiteralExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // NIL
                 Arguments.of("Nil", new Ast.Expression.Literal(null), Environment.NIL.getValue()), //remember, special case
                 // TRUE
@@ -353,17 +360,17 @@ final class InterpreterTests {
                 Arguments.of("Character", new Ast.Expression.Literal('c'), 'c'),
                 // "string"
                 Arguments.of("String", new Ast.Expression.Literal("string"), "string")
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testGroupExpression(String test, Ast ast, Object expected) {
-        test(ast, expected, new Scope(null));
+    void testGroupExpression(String test, Engine engine, Ast ast, Object expected) {
+        engine.test(ast, expected, new Scope(null));
     }
 
     private static Stream<Arguments> testGroupExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // (1)
                 Arguments.of("Literal", new Ast.Expression.Group(new Ast.Expression.Literal(BigInteger.ONE)), BigInteger.ONE),
                 // (1 + 10)
@@ -374,17 +381,17 @@ final class InterpreterTests {
                         )),
                         BigInteger.valueOf(11)
                 )
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testBinaryExpression(String test, Ast ast, Object expected) {
-        test(ast, expected, new Scope(null));
+    void testBinaryExpression(String test, Engine engine, Ast ast, Object expected) {
+        engine.test(ast, expected, new Scope(null));
     }
 
     private static Stream<Arguments> testBinaryExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // TRUE && FALSE
                 Arguments.of("And",
                         new Ast.Expression.Binary("&&",
@@ -433,6 +440,46 @@ final class InterpreterTests {
                         ),
                         BigInteger.valueOf(11)
                 ),
+                // 9223372036854775807 + 1
+                Arguments.of("Addition Overflow",
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Literal(BigInteger.valueOf(Long.MAX_VALUE)),
+                                new Ast.Expression.Literal(BigInteger.ONE)
+                        ),
+                        BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)
+                ),
+                // 4294967296 * -4294967296
+                Arguments.of("Multiplication Overflow",
+                        new Ast.Expression.Binary("*",
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(32)),
+                                new Ast.Expression.Literal(BigInteger.ONE.shiftLeft(32).negate())
+                        ),
+                        BigInteger.ONE.shiftLeft(64).negate()
+                ),
+                // -9223372036854775808 / -1
+                Arguments.of("Division Overflow",
+                        new Ast.Expression.Binary("/",
+                                new Ast.Expression.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                new Ast.Expression.Literal(BigInteger.ONE.negate())
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE).negate()
+                ),
+                // 5 ^ 0
+                Arguments.of("Power of Zero",
+                        new Ast.Expression.Binary("^",
+                                new Ast.Expression.Literal(BigInteger.valueOf(5)),
+                                new Ast.Expression.Literal(BigInteger.ZERO)
+                        ),
+                        BigInteger.ONE
+                ),
+                // 3 ^ 100
+                Arguments.of("Power Overflow",
+                        new Ast.Expression.Binary("^",
+                                new Ast.Expression.Literal(BigInteger.valueOf(3)),
+                                new Ast.Expression.Literal(BigInteger.valueOf(100))
+                        ),
+                        BigInteger.valueOf(3).pow(100)
+                ),
                 // 1.2 / 3.4
                 Arguments.of("Division",
                         new Ast.Expression.Binary("/",
@@ -452,47 +499,131 @@ final class InterpreterTests {
                         ),
                         new BigDecimal("1.5")
                 )
-        );
+        ));
     }
 
     @ParameterizedTest
     @MethodSource
-    void testAccessExpression(String test, Ast ast, Object expected) {
+    void testEvaluationCount(String test, Engine engine, Ast ast, Object expected, int evaluations) {
+        int[] count = {0};
+        Scope scope = new Scope(null);
+        scope.defineFunction("count", 1, args -> {
+            count[0]++;
+            return args.get(0);
+        });
+        engine.test(ast, expected, scope);
+        Assertions.assertEquals(evaluations, count[0]);
+    }
+
+    private static Stream<Arguments> testEvaluationCount() {
+        return Engine.all(Stream.of(
+                // count(1) + count(10)
+                Arguments.of("Addition",
+                        new Ast.Expression.Binary("+", count(BigInteger.ONE), count(BigInteger.TEN)),
+                        BigInteger.valueOf(11), 2
+                ),
+                // count(1) < count(10)
+                Arguments.of("Less Than",
+                        new Ast.Expression.Binary("<", count(BigInteger.ONE), count(BigInteger.TEN)),
+                        true, 2
+                ),
+                // count(1) == 1
+                Arguments.of("Equal",
+                        new Ast.Expression.Binary("==", count(BigInteger.ONE), new Ast.Expression.Literal(BigInteger.ONE)),
+                        true, 1
+                ),
+                // count(FALSE) && count(TRUE)
+                Arguments.of("And (Short Circuit)",
+                        new Ast.Expression.Binary("&&", count(false), count(true)),
+                        false, 1
+                ),
+                // count(FALSE) || count(TRUE)
+                Arguments.of("Or",
+                        new Ast.Expression.Binary("||", count(false), count(true)),
+                        true, 2
+                ),
+                // (count(1) + count(2)) * (count(3) - count(4))
+                Arguments.of("Nested",
+                        new Ast.Expression.Binary("*",
+                                new Ast.Expression.Binary("+", count(BigInteger.ONE), count(BigInteger.TWO)),
+                                new Ast.Expression.Binary("-", count(BigInteger.valueOf(3)), count(BigInteger.valueOf(4)))
+                        ),
+                        BigInteger.valueOf(-3), 4
+                ),
+                // count(1) + count(1) + ... with 2^10 operands
+                Arguments.of("Deep",
+                        deep(10),
+                        BigInteger.valueOf(1024), 1024
+                )
+        ));
+    }
+
+    private static Ast.Expression count(Object literal) {
+        return new Ast.Expression.Function("count", Arrays.asList(new Ast.Expression.Literal(literal)));
+    }
+
+    private static Ast.Expression deep(int depth) {
+        if (depth == 0) {
+            return count(BigInteger.ONE);
+        }
+        return new Ast.Expression.Binary("+", deep(depth - 1), deep(depth - 1));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testAccessExpression(String test, Engine engine, Ast ast, Object expected) {
         Scope scope = new Scope(null);
         scope.defineVariable("variable", true, Environment.create("variable"));
-        test(ast, expected, scope);
+        engine.test(ast, expected, scope);
     }
 
     private static Stream<Arguments> testAccessExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // variable
                 Arguments.of("Variable",
                         new Ast.Expression.Access(Optional.empty(), "variable"),
                         "variable"
                 )
-        );
+        ));
     }
 
-    @Test
-    void testListAccessExpression() {
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testListAccessExpression(Engine engine) {
         // list[1]
         List<Object> list = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
         Scope scope = new Scope(null);
         scope.defineVariable("list", true, Environment.create(list));
-        test(new Ast.Expression.Access(Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(1))), "list"), BigInteger.valueOf(5), scope);
+        engine.test(new Ast.Expression.Access(Optional.of(new Ast.Expression.Literal(BigInteger.valueOf(1))), "list"), BigInteger.valueOf(5), scope);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testListIndexOutOfBounds(Engine engine) {
+        // list[index]; list[index] = 1;
+        Scope scope = new Scope(null);
+        scope.defineVariable("list", true, Environment.create(Arrays.asList(BigInteger.ONE)));
+        scope.defineVariable("index", true, Environment.create(BigInteger.valueOf(5)));
+        Ast.Expression.Access access = new Ast.Expression.Access(Optional.of(new Ast.Expression.Access(Optional.empty(), "index")), "list");
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> engine.execute(access, scope));
+        Assertions.assertEquals("The index 5 is out of bounds for a list of size 1.", exception.getMessage());
+        exception = Assertions.assertThrows(RuntimeException.class, () -> engine.execute(
+                new Ast.Statement.Assignment(access, new Ast.Expression.Literal(BigInteger.ONE)), scope
+        ));
+        Assertions.assertEquals("The index 5 is out of bounds for a list of size 1.", exception.getMessage());
     }
 
     @ParameterizedTest
     @MethodSource
-    void testFunctionExpression(String test, Ast ast, Object expected) {
+    void testFunctionExpression(String test, Engine engine, Ast ast, Object expected) {
         Scope scope = new Scope(null);
         scope.defineFunction("function", 0, args -> Environment.create("function"));
-        test(ast, expected, scope);
+        engine.test(ast, expected, scope);
     }
 
     private static Stream<Arguments> testFunctionExpression() {
-        return Stream.of(
+        return Engine.all(Stream.of(
                 // function()
                 Arguments.of("Function",
                         new Ast.Expression.Function("function", Arrays.asList()),
@@ -503,11 +634,26 @@ final class InterpreterTests {
                         new Ast.Expression.Function("print", Arrays.asList(new Ast.Expression.Literal("Hello, World!"))),
                         Environment.NIL.getValue()
                 )
-        );
+        ));
     }
 
     @Test
-    void testPlcList() {
+    void testFunctionRedefinition() {
+        // the call site resolves the function again once another is defined
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("parent"));
+        Interpreter interpreter = new Interpreter(scope);
+        Ast.Expression.Function call = new Ast.Expression.Function("function", Arrays.asList());
+        Assertions.assertEquals("parent", interpreter.visit(call).getValue());
+        interpreter.visit(new Ast.Function("function", Arrays.asList(), Arrays.asList(
+                new Ast.Statement.Return(new Ast.Expression.Literal("child"))
+        )));
+        Assertions.assertEquals("child", interpreter.visit(call).getValue());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Engine.class)
+    void testPlcList(Engine engine) {
         // [1, 5, 10]
         List<Object> expected = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(5), BigInteger.TEN);
 
@@ -517,17 +663,7 @@ final class InterpreterTests {
 
         Ast ast = new Ast.Expression.PlcList(values);
 
-        test(ast, expected, new Scope(null));
-    }
-
-    private static Scope test(Ast ast, Object expected, Scope scope) {
-        Interpreter interpreter = new Interpreter(scope);
-        if (expected != null) {
-            Assertions.assertEquals(expected, interpreter.visit(ast).getValue());
-        } else {
-            Assertions.assertThrows(RuntimeException.class, () -> interpreter.visit(ast));
-        }
-        return interpreter.getScope();
+        engine.test(ast, expected, new Scope(null));
     }
 
 }
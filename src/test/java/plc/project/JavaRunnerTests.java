@@ -0,0 +1,97 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class JavaRunnerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRun(String test, String input, int exitCode, String output) {
+        JavaRunner.Result result = new JavaRunner().run(analyze(input));
+        Assertions.assertEquals(exitCode, result.getExitCode());
+        Assertions.assertEquals(output, result.getOutput());
+    }
+
+    private static Stream<Arguments> testRun() {
+        return Stream.of(
+                Arguments.of("Hello, World!",
+                        "FUN main(): Integer DO print(\"Hello, World!\"); RETURN 0; END",
+                        0, "Hello, World!" + System.lineSeparator()
+                ),
+                Arguments.of("Exit Code",
+                        "VAR x: Integer = 40; FUN main(): Integer DO x = x + 2; RETURN x; END",
+                        42, ""
+                ),
+                Arguments.of("Power",
+                        "FUN main(): Integer DO LET x = 3 ^ 4; RETURN x + 2 ^ 0; END",
+                        82, ""
+                ),
+                Arguments.of("Power Function",
+                        "FUN pow(a: Integer, b: Integer): Integer DO RETURN a * b; END FUN main(): Integer DO RETURN pow(2, 3) + 2 ^ 3; END",
+                        14, ""
+                ),
+                Arguments.of("Loop",
+                        "FUN main(): Integer DO LET i = 0; WHILE i < 3 DO print(i); i = i + 1; END RETURN i; END",
+                        3, String.join(System.lineSeparator(), "0", "1", "2", "")
+                ),
+                Arguments.of("Switch",
+                        "FUN f(n: Integer): Integer DO SWITCH n CASE 1: RETURN 10; CASE 2: RETURN 20; DEFAULT RETURN 0; END END FUN main(): Integer DO RETURN f(2) + f(5); END",
+                        20, ""
+                ),
+                Arguments.of("Decimal Switch",
+                        "FUN main(): Integer DO SWITCH 2.5 CASE 1.5: RETURN 1; CASE 2.5: RETURN 2; DEFAULT RETURN 0; END END",
+                        2, ""
+                ),
+                Arguments.of("Tail Call",
+                        "FUN down(n: Integer): Integer DO IF n == 0 DO RETURN 7; END RETURN down(n - 1); END FUN main(): Integer DO RETURN down(1000000); END",
+                        7, ""
+                ),
+                Arguments.of("Tail Call in Switch",
+                        "FUN f(n: Integer): Integer DO SWITCH n CASE 0: RETURN 5; DEFAULT RETURN f(n - 1); END END FUN main(): Integer DO RETURN f(1000000); END",
+                        5, ""
+                )
+        );
+    }
+
+    @Test
+    void testCache() {
+        JavaRunner runner = new JavaRunner();
+        runner.run(analyze("FUN main(): Integer DO RETURN 1; END"));
+        runner.run(analyze("FUN main(): Integer DO RETURN 1; END"));
+        Assertions.assertEquals(1, runner.getCompilations());
+        Assertions.assertEquals(2, runner.run(analyze("FUN main(): Integer DO RETURN 2; END")).getExitCode());
+        Assertions.assertEquals(2, runner.getCompilations());
+    }
+
+    @Test
+    void testState() {
+        // each run uses a new instance, so globals start over
+        JavaRunner runner = new JavaRunner();
+        Ast.Source ast = analyze("VAR x: Integer = 1; FUN main(): Integer DO x = x + 1; RETURN x; END");
+        Assertions.assertEquals(2, runner.run(ast).getExitCode());
+        Assertions.assertEquals(2, runner.run(ast).getExitCode());
+    }
+
+    @Test
+    void testCompileError() {
+        Assertions.assertThrows(RuntimeException.class, () -> new JavaRunner().run("public class Main { int main() { return \"\"; } }"));
+    }
+
+    @Test
+    void testException() {
+        Assertions.assertThrows(ArithmeticException.class, () -> new JavaRunner().run("public class Main { int main() { return 1 / 0; } }"));
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}
@@ -0,0 +1,165 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class JitCompilerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testCompile(String test, String input, List<Integer> args, Object expected) {
+        Ast.Function ast = analyze(input).getFunctions().get(0);
+        Function<List<Environment.PlcObject>, Environment.PlcObject> function = JitCompiler.compile(ast, arguments -> {
+            throw new AssertionError("Unexpected fallback.");
+        });
+        Assertions.assertNotNull(function);
+        List<Environment.PlcObject> values = args.stream()
+                .map(arg -> Environment.create(BigInteger.valueOf(arg)))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(expected, function.apply(values).getValue());
+    }
+
+    private static Stream<Arguments> testCompile() {
+        return Stream.of(
+                Arguments.of("Arithmetic",
+                        "FUN f(x: Integer, y: Integer): Integer DO LET sum = x + y; LET difference = x - y; LET product = sum * difference; RETURN (product / 2); END",
+                        List.of(7, 3), BigInteger.valueOf(20)
+                ),
+                Arguments.of("Large Result",
+                        "FUN f(x: Integer): Integer DO LET square = x * x; RETURN square * square; END",
+                        List.of(100000), new BigInteger("100000000000000000000")
+                ),
+                Arguments.of("Nested Return",
+                        "FUN f(x: Integer): Integer DO IF x < 0 DO RETURN -1; ELSE IF x > 0 DO RETURN 1; END END RETURN 0; END",
+                        List.of(-5), BigInteger.valueOf(-1)
+                ),
+                Arguments.of("No Return",
+                        "FUN f(x: Integer): Integer DO LET y = x; END",
+                        List.of(1), Environment.NIL.getValue()
+                ),
+                Arguments.of("While",
+                        "FUN f(n: Integer): Integer DO LET sum = 0; LET i = 1; WHILE i < n DO sum = sum + i; i = i + 1; END RETURN sum; END",
+                        List.of(101), BigInteger.valueOf(5050)
+                ),
+                Arguments.of("Logical",
+                        "FUN f(x: Integer): Integer DO IF (x > 5 && x != 7) || x == 1 DO RETURN 1; END RETURN 0; END",
+                        List.of(6), BigInteger.ONE
+                ),
+                Arguments.of("Logical False",
+                        "FUN f(x: Integer): Integer DO IF (x > 5 && x != 7) || x == 1 DO RETURN 1; END RETURN 0; END",
+                        List.of(7), BigInteger.ZERO
+                ),
+                Arguments.of("Block Scope",
+                        "FUN f(x: Integer): Integer DO IF TRUE DO LET x = 2; END RETURN x; END",
+                        List.of(1), BigInteger.ONE
+                ),
+                Arguments.of("Recursion",
+                        "FUN f(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN f(n - 1) + f(n - 2); END",
+                        List.of(20), BigInteger.valueOf(6765)
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testUnsupported(String test, String input) {
+        Ast.Function ast = analyze(input).getFunctions().get(0);
+        Assertions.assertNull(JitCompiler.compile(ast, args -> Environment.NIL));
+    }
+
+    private static Stream<Arguments> testUnsupported() {
+        return Stream.of(
+                Arguments.of("Decimal Parameter",
+                        "FUN f(x: Decimal): Integer DO RETURN 1; END"
+                ),
+                Arguments.of("Global",
+                        "VAR y: Integer = 1; FUN f(x: Integer): Integer DO RETURN x + y; END"
+                ),
+                Arguments.of("Other Function",
+                        "FUN f(x: Integer): Integer DO print(x); RETURN x; END"
+                ),
+                Arguments.of("Switch",
+                        "FUN f(x: Integer): Integer DO SWITCH x CASE 1: RETURN 1; DEFAULT RETURN 0; END END"
+                ),
+                Arguments.of("Power",
+                        "FUN f(x: Integer): Integer DO RETURN x ^ 2; END"
+                )
+        );
+    }
+
+    @Test
+    void testNotAnalyzed() {
+        Ast.Function ast = new Parser(new Lexer("FUN f(x: Integer): Integer DO RETURN x; END").lex()).parseFunction();
+        Assertions.assertNull(JitCompiler.compile(ast, args -> Environment.NIL));
+    }
+
+    @Test
+    void testThreshold() {
+        Ast.Source ast = analyze("FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO RETURN square(3); END");
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setCompileThreshold(3);
+        Assertions.assertEquals(BigInteger.valueOf(9), interpreter.visit(ast).getValue());
+        Assertions.assertFalse(interpreter.isCompiled("square", 1));
+
+        Environment.Function square = interpreter.getScope().lookupFunction("square", 1);
+        Assertions.assertEquals(BigInteger.valueOf(16), square.invoke(List.of(Environment.create(BigInteger.valueOf(4)))).getValue());
+        Assertions.assertFalse(interpreter.isCompiled("square", 1));
+        Assertions.assertEquals(BigInteger.valueOf(25), square.invoke(List.of(Environment.create(BigInteger.valueOf(5)))).getValue());
+        Assertions.assertTrue(interpreter.isCompiled("square", 1));
+        Assertions.assertFalse(interpreter.isCompiled("main", 0));
+    }
+
+    @Test
+    void testTailRecursion() {
+        // compiled partway through, so the rest of the recursion runs compiled
+        Ast.Source ast = analyze("FUN sum(n: Integer, total: Integer): Integer DO IF n == 0 DO RETURN total; END RETURN sum(n - 1, total + n); END FUN main(): Integer DO RETURN sum(100000, 0); END");
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setCompileThreshold(10);
+        Assertions.assertEquals(BigInteger.valueOf(5000050000L), interpreter.visit(ast).getValue());
+        Assertions.assertTrue(interpreter.isCompiled("sum", 2));
+    }
+
+    @Test
+    void testDivideByZero() {
+        Ast.Source ast = analyze("FUN q(x: Integer, y: Integer): Integer DO RETURN x / y; END FUN main(): Integer DO RETURN q(1, 1); END");
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.setCompileThreshold(10);
+        interpreter.visit(ast);
+        Environment.Function q = interpreter.getScope().lookupFunction("q", 2);
+        for (int i = 0; i < 20; i++) {
+            q.invoke(List.of(Environment.create(BigInteger.valueOf(i)), Environment.create(BigInteger.ONE)));
+        }
+        Assertions.assertTrue(interpreter.isCompiled("q", 2));
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> q.invoke(List.of(Environment.create(BigInteger.ONE), Environment.create(BigInteger.ZERO))));
+        Assertions.assertEquals("cannot divide by zero", exception.getMessage());
+    }
+
+    @Test
+    void testFallback() {
+        // the compiled function only handles Integer arguments
+        Ast.Source ast = analyze("FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO RETURN square(3); END");
+        Ast.Function square = ast.getFunctions().get(0);
+        Function<List<Environment.PlcObject>, Environment.PlcObject> function = JitCompiler.compile(square, args -> Environment.create("interpreted"));
+        Assertions.assertEquals("interpreted", function.apply(List.of(Environment.create("x"))).getValue());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Scope scope = new Scope(null);
+        if (!input.contains("FUN main")) {
+            scope.defineFunction("main", "main", List.of(), Environment.Type.INTEGER, args -> Environment.NIL);
+        }
+        new Analyzer(scope).visit(ast);
+        return ast;
+    }
+
+}
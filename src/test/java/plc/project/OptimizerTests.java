@@ -0,0 +1,100 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class OptimizerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testFolding(String test, String input, Object expected) {
+        Ast.Expression ast = new Parser(new Lexer(input).lex()).parseExpression();
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast optimized = new Optimizer().visit(ast);
+        if (expected != null) {
+            Assertions.assertTrue(optimized instanceof Ast.Expression.Literal, "expected a literal, received " + optimized);
+            Assertions.assertEquals(expected, ((Ast.Expression.Literal) optimized).getLiteral());
+            Assertions.assertEquals(ast.getType(), ((Ast.Expression.Literal) optimized).getType());
+        } else {
+            Assertions.assertFalse(optimized instanceof Ast.Expression.Literal, "expected no folding, received " + optimized);
+        }
+    }
+
+    private static Stream<Arguments> testFolding() {
+        return Stream.of(
+                Arguments.of("Addition", "1 + 2", BigInteger.valueOf(3)),
+                Arguments.of("Precedence", "1 + 2 * 3", BigInteger.valueOf(7)),
+                Arguments.of("Group", "(1 + 2) * 3", BigInteger.valueOf(9)),
+                Arguments.of("Integer Division", "7 / 2", BigInteger.valueOf(3)),
+                Arguments.of("Power", "2 ^ 3", BigInteger.valueOf(8)),
+                Arguments.of("Concatenation", "\"a\" + \"b\"", "ab"),
+                Arguments.of("Mixed Concatenation", "\"a\" + 1", "a1"),
+                Arguments.of("Comparison", "1 < 2", true),
+                Arguments.of("Logical", "TRUE && FALSE", false),
+                Arguments.of("Division By Zero", "1 / 0", null),
+                Arguments.of("Decimal", "1.0 + 2.0", null),
+                Arguments.of("Integer Overflow", "2147483647 + 1", null)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(new Optimizer().visit(ast));
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                // VAL x: Integer = 2; FUN main(): Integer DO RETURN x * 3; END
+                Arguments.of("Propagation",
+                        "VAL x: Integer = 2; FUN main(): Integer DO RETURN x * 3; END",
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    final int x = 2;",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        return 6;",
+                                "    }",
+                                "",
+                                "}"
+                        )
+                ),
+                // VAR x: Integer = 2; FUN main(): Integer DO RETURN (1 + 2) * x; END
+                Arguments.of("Mutable Global",
+                        "VAR x: Integer = 2; FUN main(): Integer DO RETURN (1 + 2) * x; END",
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    int x = 2;",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        return 3 * x;",
+                                "    }",
+                                "",
+                                "}"
+                        )
+                )
+        );
+    }
+
+}
@@ -0,0 +1,74 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class PurityAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, List<String> pure, List<String> recursive) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        PurityAnalyzer analyzer = new PurityAnalyzer();
+        analyzer.visit(ast);
+
+        for (Ast.Function function : ast.getFunctions()) {
+            Assertions.assertEquals(pure.contains(function.getName()), function.getFunction().isPure(), function.getName() + " purity");
+            Assertions.assertEquals(recursive.contains(function.getName()), function.getFunction().isRecursive(), function.getName() + " recursion");
+        }
+        Assertions.assertEquals(ast.getFunctions().size(), analyzer.getComponents().stream().mapToInt(List::size).sum());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Pure Call",
+                        "FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO RETURN square(2); END",
+                        Arrays.asList("square", "main"),
+                        Arrays.asList()
+                ),
+                Arguments.of("Print",
+                        "FUN main(): Integer DO print(1); RETURN 0; END",
+                        Arrays.asList(),
+                        Arrays.asList()
+                ),
+                Arguments.of("Global Assignment",
+                        "VAR count: Integer = 0; FUN inc(): Integer DO count = count + 1; RETURN 0; END FUN main(): Integer DO RETURN inc(); END",
+                        Arrays.asList(),
+                        Arrays.asList()
+                ),
+                Arguments.of("Immutable Global",
+                        "VAL k: Integer = 2; FUN scale(x: Integer): Integer DO RETURN x * k; END FUN main(): Integer DO RETURN scale(1); END",
+                        Arrays.asList("scale", "main"),
+                        Arrays.asList()
+                ),
+                Arguments.of("Impure Callee",
+                        "FUN log(x: Integer): Integer DO print(x); RETURN x; END FUN main(): Integer DO RETURN log(1); END",
+                        Arrays.asList(),
+                        Arrays.asList()
+                ),
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END FUN main(): Integer DO RETURN fib(10); END",
+                        Arrays.asList("fib", "main"),
+                        Arrays.asList("fib")
+                ),
+                Arguments.of("Global List Alias",
+                        "LIST g: Integer = [1, 2]; FUN f(): Integer DO LET q = g; q[0] = 3; RETURN 0; END FUN main(): Integer DO RETURN f(); END",
+                        Arrays.asList(),
+                        Arrays.asList()
+                ),
+                Arguments.of("Parameter List Alias",
+                        "LIST g: Integer = [1, 2]; FUN f(p: Integer): Integer DO LET q = p; q[0] = 3; RETURN 0; END FUN main(): Integer DO RETURN f(g); END",
+                        Arrays.asList(),
+                        Arrays.asList()
+                )
+        );
+    }
+
+}
@@ -0,0 +1,92 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.stream.Stream;
+
+final class RangeAnalyzerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRange(String test, String input, RangeAnalyzer.Range expected, boolean fitsInt, boolean fitsLong) {
+        Ast.Expression.Binary ast = analyze(input);
+        Assertions.assertEquals(expected, ast.getRange());
+        if (expected != null) {
+            Assertions.assertEquals(fitsInt, ast.getRange().fitsInt());
+            Assertions.assertEquals(fitsLong, ast.getRange().fitsLong());
+        }
+    }
+
+    private static Stream<Arguments> testRange() {
+        BigInteger min = BigInteger.valueOf(Integer.MIN_VALUE);
+        BigInteger max = BigInteger.valueOf(Integer.MAX_VALUE);
+        return Stream.of(
+                Arguments.of("Literals", "1 + 2", range(3, 3), true, true),
+                Arguments.of("Variable", "x + 1", new RangeAnalyzer.Range(min.add(BigInteger.ONE), max.add(BigInteger.ONE)), false, true),
+                Arguments.of("Product", "x * x", new RangeAnalyzer.Range(min.multiply(max), min.multiply(min)), false, true),
+                Arguments.of("Long Overflow", "x * x * x", new RangeAnalyzer.Range(min.pow(3), min.pow(2).multiply(max)), false, false),
+                Arguments.of("Division", "x / 2", new RangeAnalyzer.Range(BigInteger.valueOf(Integer.MIN_VALUE / 2), BigInteger.valueOf(Integer.MAX_VALUE / 2)), true, true),
+                Arguments.of("Division By Variable", "10 / x", range(-10, 10), true, true),
+                Arguments.of("Decimal", "1.0 + 2.0", null, false, false)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testGenerator(String test, String input, String expected) {
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(analyze(input));
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    private static Stream<Arguments> testGenerator() {
+        return Stream.of(
+                Arguments.of("Proven", "x / 2", "x / 2"),
+                Arguments.of("Addition", "x + 1", "Math.addExact(x, 1)"),
+                Arguments.of("Multiplication", "x * x", "Math.multiplyExact(x, x)")
+        );
+    }
+
+    @Test
+    void testInterpreterFallback() {
+        // x * x * x with x outside the assumed int range must still be exact
+        Ast.Expression.Binary ast = analyze("x * x * x");
+        BigInteger x = BigInteger.valueOf(3_000_000_000L);
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", true, Environment.create(x));
+        Assertions.assertEquals(x.pow(3), new Interpreter(scope).visit(ast).getValue());
+
+        Scope small = new Scope(null);
+        small.defineVariable("x", true, Environment.create(BigInteger.valueOf(-7)));
+        Assertions.assertEquals(BigInteger.valueOf(-343), new Interpreter(small).visit(ast).getValue());
+    }
+
+    @Test
+    void testInterpreterDivisionByZero() {
+        Ast.Expression.Binary ast = analyze("10 / x");
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", true, Environment.create(BigInteger.ZERO));
+        Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(scope).visit(ast));
+    }
+
+    private static Ast.Expression.Binary analyze(String input) {
+        Ast.Expression ast = new Parser(new Lexer(input).lex()).parseExpression();
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, true, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        new RangeAnalyzer().visit(ast);
+        return (Ast.Expression.Binary) ast;
+    }
+
+    private static RangeAnalyzer.Range range(long minimum, long maximum) {
+        return new RangeAnalyzer.Range(BigInteger.valueOf(minimum), BigInteger.valueOf(maximum));
+    }
+
+}
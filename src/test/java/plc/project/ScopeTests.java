@@ -0,0 +1,55 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+final class ScopeTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testLookupFunction(String test, String name, int arity, String expected) {
+        Scope parent = new Scope(null);
+        parent.defineFunction("function", 1, args -> Environment.create("parent"));
+        Scope scope = new Scope(parent);
+        scope.defineFunction("function", 2, args -> Environment.create("child"));
+        if (expected != null) {
+            Assertions.assertEquals(expected, scope.lookupFunction(name, arity).invoke(null).getValue());
+            Assertions.assertSame(scope.lookupFunction(name, arity), scope.lookupFunction(new Scope.FunctionKey(name, arity)));
+        } else {
+            RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> scope.lookupFunction(name, arity));
+            Assertions.assertEquals("The function " + name + "/" + arity + " is not defined in this scope.", exception.getMessage());
+        }
+    }
+
+    private static Stream<Arguments> testLookupFunction() {
+        return Stream.of(
+                Arguments.of("Defined", "function", 2, "child"),
+                Arguments.of("Parent", "function", 1, "parent"),
+                Arguments.of("Arity", "function", 0, null),
+                Arguments.of("Undefined", "undefined", 1, null)
+        );
+    }
+
+    @Test
+    void testFunctionKey() {
+        Scope.FunctionKey key = new Scope.FunctionKey("function", 1);
+        Assertions.assertEquals(key, new Scope.FunctionKey(new String("function"), 1));
+        Assertions.assertEquals(key.hashCode(), new Scope.FunctionKey(new String("function"), 1).hashCode());
+        Assertions.assertNotEquals(key, new Scope.FunctionKey("function", 2));
+        Assertions.assertEquals("function/1", key.toString());
+    }
+
+    @Test
+    void testRedefineFunction() {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 1, args -> Environment.NIL);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> scope.defineFunction("function", 1, args -> Environment.NIL));
+        Assertions.assertEquals("The function function/1 is already defined in this scope.", exception.getMessage());
+    }
+
+}
@@ -0,0 +1,90 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Tests how the nodes of the {@link ClosureInterpreter} specialize with type
+ * feedback.
+ */
+final class SpecializingInterpreterTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSpecialization(String test, String operator, List<Object> values, List<Object> results, String expected) {
+        ClosureInterpreter interpreter = new ClosureInterpreter(new Scope(null));
+        interpreter.setTypeFeedback(true);
+        interpreter.getScope().defineVariable("x", true, Environment.NIL);
+        ClosureInterpreter.Node node = interpreter.compile(new Ast.Expression.Binary(operator,
+                new Ast.Expression.Access(Optional.empty(), "x"),
+                new Ast.Expression.Access(Optional.empty(), "x")
+        ));
+        Assertions.assertEquals(operator + "[uninitialized]", node.toString());
+        for (int i = 0; i < values.size(); i++) {
+            interpreter.getScope().lookupVariable("x").setValue(Environment.create(values.get(i)));
+            Assertions.assertEquals(results.get(i), node.execute(interpreter.getScope()).getValue());
+        }
+        Assertions.assertEquals(expected, node.toString());
+    }
+
+    private static Stream<Arguments> testSpecialization() {
+        return Stream.of(
+                Arguments.of("Integer",
+                        "+", List.of(BigInteger.ONE, BigInteger.TWO),
+                        List.of(BigInteger.TWO, BigInteger.valueOf(4)), "+[Integer]"
+                ),
+                Arguments.of("Decimal",
+                        "*", List.of(new BigDecimal("1.5"), new BigDecimal("2.0")),
+                        List.of(new BigDecimal("2.25"), new BigDecimal("4.00")), "*[Decimal]"
+                ),
+                Arguments.of("String",
+                        "+", List.of("a", "b"),
+                        List.of("aa", "bb"), "+[String]"
+                ),
+                Arguments.of("Comparison",
+                        "<", List.of(BigInteger.ONE),
+                        List.of(false), "<[Integer]"
+                ),
+                Arguments.of("Deoptimized",
+                        "-", List.of(BigInteger.TEN, new BigDecimal("1.5"), BigInteger.ONE),
+                        List.of(BigInteger.ZERO, new BigDecimal("0.0"), BigInteger.ZERO), "-[generic]"
+                ),
+                Arguments.of("Generic",
+                        ">", List.of('b'),
+                        List.of(false), ">[generic]"
+                )
+        );
+    }
+
+    @Test
+    void testAnalyzed() {
+        // types known from analysis are used directly
+        ClosureInterpreter interpreter = new ClosureInterpreter(new Scope(null));
+        interpreter.setTypeFeedback(true);
+        Ast.Expression ast = new Parser(new Lexer("1 + 2").lex()).parseExpression();
+        new Analyzer(new Scope(null)).visit(ast);
+        Assertions.assertFalse(interpreter.compile(ast).toString().startsWith("+["));
+    }
+
+    @Test
+    void testTypeMismatch() {
+        ClosureInterpreter interpreter = new ClosureInterpreter(new Scope(null));
+        interpreter.setTypeFeedback(true);
+        Ast.Expression ast = new Ast.Expression.Binary("-",
+                new Ast.Expression.Literal(BigInteger.ONE),
+                new Ast.Expression.Literal(BigDecimal.ONE)
+        );
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> interpreter.execute(ast));
+        Assertions.assertEquals("types of the sides of the equation do not match", exception.getMessage());
+    }
+
+}
@@ -0,0 +1,61 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class TypedListTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testOf(String test, Environment.Type type, List<Object> values, Class<?> component) {
+        TypedList list = TypedList.of(type, values.stream().map(Environment::create).collect(Collectors.toList()));
+        Assertions.assertEquals(values, list);
+        Assertions.assertEquals(component, list.getComponentType());
+    }
+
+    private static Stream<Arguments> testOf() {
+        return Stream.of(
+                Arguments.of("Integer", Environment.Type.INTEGER, Arrays.asList(BigInteger.ONE, BigInteger.valueOf(Long.MAX_VALUE)), long.class),
+                Arguments.of("Decimal", Environment.Type.DECIMAL, Arrays.asList(new BigDecimal("1.0"), new BigDecimal("-2.5")), double.class),
+                Arguments.of("Character", Environment.Type.CHARACTER, Arrays.asList('a', 'b'), char.class),
+                Arguments.of("Boolean", Environment.Type.BOOLEAN, Arrays.asList(true, false), boolean.class),
+                Arguments.of("String", Environment.Type.STRING, Arrays.asList("a", "b"), Object.class),
+                Arguments.of("Inferred", null, Arrays.asList(BigInteger.ONE, BigInteger.TEN), long.class),
+                Arguments.of("Empty", null, Arrays.asList(), Object.class),
+                Arguments.of("Large Integer", Environment.Type.INTEGER, Arrays.asList(BigInteger.ONE, BigInteger.ONE.shiftLeft(64)), Object.class),
+                Arguments.of("Inexact Decimal", Environment.Type.DECIMAL, Arrays.asList(new BigDecimal("1.50")), Object.class)
+        );
+    }
+
+    @Test
+    void testSetElement() {
+        TypedList list = new TypedList(Environment.Type.INTEGER, 2);
+        list.setElement(0, Environment.createLong(1L << 40));
+        Assertions.assertTrue(list.getElement(0).isLong());
+        Assertions.assertEquals(BigInteger.ONE.shiftLeft(40), list.getElement(0).getValue());
+        Assertions.assertEquals(long.class, list.getComponentType());
+
+        // an Integer beyond a long moves the elements to boxed storage
+        list.setElement(1, Environment.create(BigInteger.ONE.shiftLeft(70)));
+        Assertions.assertEquals(Object.class, list.getComponentType());
+        Assertions.assertEquals(Arrays.asList(BigInteger.ONE.shiftLeft(40), BigInteger.ONE.shiftLeft(70)), list);
+    }
+
+    @Test
+    void testOutOfBounds() {
+        TypedList list = new TypedList(Environment.Type.INTEGER, 1);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.getElement(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.setElement(-1, Environment.createLong(1)));
+    }
+
+}
@@ -0,0 +1,133 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class VirtualMachineTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input, Object expected) {
+        Ast.Source ast = analyze(input);
+        Assertions.assertEquals(expected, new VirtualMachine(new Scope(null)).execute(ast).getValue());
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Main",
+                        "FUN main(): Integer DO RETURN 0; END",
+                        BigInteger.ZERO
+                ),
+                Arguments.of("Globals",
+                        "VAR x: Integer = 1; VAL y: Integer = 10; FUN main(): Integer DO x = x + y; RETURN x; END",
+                        BigInteger.valueOf(11)
+                ),
+                Arguments.of("No Return",
+                        "FUN main(): Integer DO LET x = 1; END",
+                        Environment.NIL.getValue()
+                ),
+                Arguments.of("While",
+                        "FUN main(): Integer DO LET sum = 0; LET i = 1; WHILE i < 11 DO sum = sum + i * i; i = i + 1; END RETURN sum; END",
+                        BigInteger.valueOf(385)
+                ),
+                Arguments.of("List",
+                        "LIST list: Integer = [1, 5, 10]; FUN main(): Integer DO LET i = 0; WHILE i < 3 DO list[i] = list[i] * 2; i = i + 1; END LET total = list[0] + list[1]; RETURN total + list[2]; END",
+                        BigInteger.valueOf(32)
+                ),
+                Arguments.of("If Else",
+                        "FUN sign(x: Integer): Integer DO IF x < 0 DO RETURN -1; ELSE IF x > 0 DO RETURN 1; END END RETURN 0; END FUN main(): Integer DO LET total = sign(0 - 5) + sign(0) * 10; RETURN total + sign(7) * 100; END",
+                        BigInteger.valueOf(99)
+                ),
+                Arguments.of("Switch",
+                        "FUN name(x: Integer): String DO SWITCH x CASE 1: RETURN \"one\"; CASE 2: RETURN \"two\"; DEFAULT RETURN \"many\"; END END FUN main(): Integer DO LET names = name(1) + name(2); IF names + name(3) == \"onetwomany\" DO RETURN 1; END RETURN 0; END",
+                        BigInteger.ONE
+                ),
+                Arguments.of("Block Scope",
+                        "FUN main(): Integer DO LET x = 1; IF TRUE DO LET x = 2; END RETURN x; END",
+                        BigInteger.ONE
+                ),
+                Arguments.of("Logical",
+                        "FUN main(): Integer DO LET a = FALSE && TRUE; IF a || TRUE DO RETURN 1; END RETURN 0; END",
+                        BigInteger.ONE
+                ),
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO IF n < 2 DO RETURN n; END RETURN fib(n - 1) + fib(n - 2); END FUN main(): Integer DO RETURN fib(15); END",
+                        BigInteger.valueOf(610)
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testIndexOutOfBounds(String test, String input, String message) {
+        Ast.Source ast = analyze(input);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> new VirtualMachine(new Scope(null)).execute(ast));
+        Assertions.assertEquals(message, exception.getMessage());
+    }
+
+    private static Stream<Arguments> testIndexOutOfBounds() {
+        return Stream.of(
+                Arguments.of("Negative",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 0 - 1; RETURN list[i]; END",
+                        "The index -1 is out of bounds for a list of size 3."
+                ),
+                Arguments.of("Too Large",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO RETURN list[3]; END",
+                        "The index 3 is out of bounds for a list of size 3."
+                ),
+                Arguments.of("Beyond Int",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 65536 * 65536; RETURN list[i]; END",
+                        "The index 4294967296 is out of bounds for a list of size 3."
+                ),
+                Arguments.of("Assignment Beyond Int",
+                        "LIST list: Integer = [1, 2, 3]; FUN main(): Integer DO LET i = 65536 * 65536; list[i] = 5; RETURN list[0]; END",
+                        "The index 4294967296 is out of bounds for a list of size 3."
+                )
+        );
+    }
+
+    @Test
+    void testPrint() {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            new VirtualMachine(new Scope(null)).execute(analyze("FUN main(): Integer DO print(\"Hello, World!\"); RETURN 0; END"));
+            Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @Test
+    void testFunctions() {
+        // external functions are called through the scope, compiled ones are defined in it
+        Scope scope = new Scope(null);
+        scope.defineFunction("twice", "twice", Arrays.asList(Environment.Type.INTEGER), Environment.Type.INTEGER,
+                args -> Environment.create(((BigInteger) args.get(0).getValue()).multiply(BigInteger.TWO)));
+        Ast.Source ast = new Parser(new Lexer("FUN square(x: Integer): Integer DO LET product = twice(x) * x; RETURN product / 2; END FUN main(): Integer DO RETURN square(3); END").lex()).parseSource();
+        new Analyzer(scope).visit(ast);
+
+        VirtualMachine machine = new VirtualMachine(scope);
+        Assertions.assertEquals(BigInteger.valueOf(9), machine.execute(ast).getValue());
+        Environment.Function square = machine.getScope().lookupFunction("square", 1);
+        Assertions.assertEquals(BigInteger.valueOf(100), square.invoke(List.of(Environment.create(BigInteger.TEN))).getValue());
+    }
+
+    private static Ast.Source analyze(String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        return ast;
+    }
+
+}